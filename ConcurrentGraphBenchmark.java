@@ -0,0 +1,168 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark driver measuring read throughput while one writer keeps changing the graph.
+ * It compares a {@link ThreeTenGraph} guarded by a single lock with a
+ * {@link ConcurrentThreeTenGraph}, whose readers work on snapshots without locking.
+ *
+ * <p>Usage: {@code java ConcurrentGraphBenchmark [vertices] [threads] [seconds] [writesPerSecond]}.
+ * Each reader alternates a topological sort with predecessor queries on random vertices.
+ * The writer adds and removes one edge at the given rate.
+ */
+class ConcurrentGraphBenchmark {
+    /**
+     * Main method running the locked and the snapshot configuration.
+     *
+     * @param args 0 - optional number of vertices, 1 - optional number of reader threads,
+     *             2 - optional seconds per configuration, 3 - optional writes per second
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int writesPerSecond = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        System.out.printf("%-10s %8s %14s %10s%n", "graph", "threads", "reads/s", "writes");
+        for (int config = 0; config < 2; config++) {
+            ThreeTenGraph<String> locked = new ThreeTenGraph<>();
+            ConcurrentThreeTenGraph<String> concurrent = new ConcurrentThreeTenGraph<>();
+            if (config == 0) {
+                GraphBatch<String> batch = locked.batch();
+                build(batch, n);
+                batch.apply();
+            } else {
+                concurrent.update(batch -> build(batch, n));
+            }
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            LongAdder reads = new LongAdder();
+            long[] writes = new long[1];
+            boolean useLock = config == 0;
+
+            Thread writer = new Thread(() -> {
+                Random random = new Random(1);
+                long pause = Math.max(1, 1000 / Math.max(1, writesPerSecond));
+                while (running.get()) {
+                    int from = random.nextInt(n - 1);
+                    String v1 = "v" + from;
+                    String v2 = "v" + (from + 1 + random.nextInt(n - 1 - from));
+                    if (useLock) {
+                        synchronized (locked) {
+                            Destination<String> edge = locked.findEdge(v1, v2);
+                            if (edge == null) {
+                                locked.addEdge(new Destination<>(null, random.nextInt(100)), v1, v2);
+                            } else {
+                                locked.removeEdge(edge);
+                            }
+                        }
+                    } else {
+                        Destination<String> edge = concurrent.snapshot().findEdge(v1, v2);
+                        if (edge == null) {
+                            concurrent.addEdge(new Destination<>(null, random.nextInt(100)), v1, v2);
+                        } else {
+                            concurrent.removeEdge(edge);
+                        }
+                    }
+                    writes[0]++;
+                    try {
+                        Thread.sleep(pause);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            Thread[] readers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                readers[t] = new Thread(() -> {
+                    Random random = new Random(seed);
+                    long checksum = 0;
+                    while (running.get()) {
+                        String v = "v" + random.nextInt(n);
+                        if (useLock) {
+                            synchronized (locked) {
+                                checksum += read(locked, v);
+                            }
+                        } else {
+                            checksum += read(concurrent.snapshot(), v);
+                        }
+                        reads.increment();
+                    }
+                    consume(checksum);
+                });
+            }
+
+            writer.start();
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            Thread.sleep(seconds * 1000L);
+            running.set(false);
+            writer.interrupt();
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            System.out.printf("%-10s %8d %14.0f %10d%n", useLock ? "locked" : "snapshot",
+                    threads, reads.sum() / (double) seconds, writes[0]);
+        }
+    }
+
+    /**
+     * Builds a layered DAG over {@code v0 .. v<n-1>} where every edge points to a
+     * higher-numbered vertex.
+     *
+     * @param batch the batch that stages the graph
+     * @param n the number of vertices
+     */
+    private static void build(GraphBatch<String> batch, int n) {
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            batch.addVertex("v" + i);
+        }
+        for (int i = 0; i < n - 1; i++) {
+            for (int k = 0; k < 4; k++) {
+                int j = i + 1 + random.nextInt(Math.min(50, n - 1 - i));
+                batch.addEdge(new Destination<>(null, random.nextInt(100)), "v" + i, "v" + j);
+            }
+        }
+    }
+
+    /**
+     * One read operation on a live graph: a topological sort from the vertex
+     * followed by a predecessor query.
+     *
+     * @param graph the graph to read
+     * @param vertex a vertex of the graph
+     * @return a value derived from the results
+     */
+    private static long read(ThreeTenGraph<String> graph, String vertex) {
+        return TopologicalSort.topologicalSort(graph, vertex).size() + graph.getPredecessors(vertex).size();
+    }
+
+    /**
+     * One read operation on a snapshot: a topological sort from the vertex
+     * followed by a predecessor query.
+     *
+     * @param graph the snapshot to read
+     * @param vertex a vertex of the snapshot
+     * @return a value derived from the results
+     */
+    private static long read(FrozenGraph<String> graph, String vertex) {
+        return TopologicalSort.topologicalSort(graph, vertex).size() + graph.getPredecessors(vertex).size();
+    }
+
+    /**
+     * Keeps a result alive so the JIT cannot discard the measured work.
+     *
+     * @param value the value to consume
+     */
+    private static void consume(long value) {
+        if (value == 42) {
+            System.out.print("");
+        }
+    }
+}
@@ -0,0 +1,637 @@
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe priority queue with the same {@code Queue} contract as {@link MinHeap},
+ * for sharing one queue of prioritized jobs across worker threads.
+ *
+ * <p>Two orderings are available:
+ * <ul>
+ * <li>{@link #strict()} keeps elements in a lock-free skip list. Every poll returns a
+ *     smallest element; equal elements come out in insertion order.</li>
+ * <li>{@link #relaxed(int)} spreads elements over many independently locked
+ *     {@link MinHeap}s (a "multi-queue"). Offers go to a random heap; polls compare the
+ *     heads of two random heaps and take the smaller. Threads rarely contend, so
+ *     throughput keeps scaling with cores, at the cost of a poll returning one of the
+ *     smallest few elements rather than always the smallest.</li>
+ * </ul>
+ *
+ * <p>Iterators are weakly consistent and {@code size} is a running count that may lag
+ * concurrent updates, as in {@code java.util.concurrent}.
+ *
+ * @param <E> the type of elements held in this queue, which must be Comparable.
+ */
+class ConcurrentMinHeap<E extends Comparable<E>> extends AbstractQueue<E> {
+    /**
+     * The number of heaps per available processor in relaxed mode.
+     */
+    private static final int QUEUES_PER_PROCESSOR = 2;
+
+    /**
+     * The skip list of the strict mode, or null in relaxed mode.
+     */
+    private final ConcurrentSkipListSet<Entry<E>> skipList;
+
+    /**
+     * Insertion counter breaking ties in strict mode.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The heaps of the relaxed mode, or null in strict mode.
+     */
+    private final MinHeap<E>[] heaps;
+
+    /**
+     * One lock per heap in relaxed mode.
+     */
+    private final ReentrantLock[] locks;
+
+    /**
+     * The last published head of each heap, read without locking to choose a heap to poll.
+     */
+    private final AtomicReferenceArray<E> heads;
+
+    /**
+     * The number of elements, kept without a single contended counter.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * An element paired with its insertion number, so equal elements stay distinct in the skip list.
+     *
+     * @param <E> the type of the element
+     */
+    private static final class Entry<E extends Comparable<E>> implements Comparable<Entry<E>> {
+        /**
+         * The queued element.
+         */
+        final E element;
+
+        /**
+         * The insertion number of the element.
+         */
+        final long seq;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param element the queued element
+         * @param seq the insertion number
+         */
+        Entry(E element, long seq) {
+            this.element = element;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Entry<E> other) {
+            int c = element.compareTo(other.element);
+            return c != 0 ? c : Long.compare(seq, other.seq);
+        }
+    }
+
+    /**
+     * Constructs a queue in strict mode if {@code queues} is zero, or in relaxed mode
+     * with the given number of heaps otherwise.
+     *
+     * @param queues the number of heaps, or 0 for strict mode
+     */
+    @SuppressWarnings("unchecked")
+    private ConcurrentMinHeap(int queues) {
+        if (queues == 0) {
+            this.skipList = new ConcurrentSkipListSet<>();
+            this.heaps = null;
+            this.locks = null;
+            this.heads = null;
+            return;
+        }
+        this.skipList = null;
+        this.heaps = (MinHeap<E>[]) new MinHeap[queues];
+        this.locks = new ReentrantLock[queues];
+        this.heads = new AtomicReferenceArray<>(queues);
+        for (int i = 0; i < queues; i++) {
+            heaps[i] = new MinHeap<>();
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Creates a queue where every poll returns a smallest element.
+     *
+     * @param <E> the type of elements held in the queue
+     * @return an empty strictly ordered queue
+     */
+    public static <E extends Comparable<E>> ConcurrentMinHeap<E> strict() {
+        return new ConcurrentMinHeap<>(0);
+    }
+
+    /**
+     * Creates a relaxed queue with two heaps per available processor.
+     *
+     * @param <E> the type of elements held in the queue
+     * @return an empty relaxed queue
+     */
+    public static <E extends Comparable<E>> ConcurrentMinHeap<E> relaxed() {
+        return relaxed(QUEUES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a relaxed queue spread over the given number of heaps. More heaps mean
+     * less contention but a looser ordering.
+     *
+     * @param <E> the type of elements held in the queue
+     * @param queues the number of heaps, at least 2
+     * @return an empty relaxed queue
+     * @throws IllegalArgumentException if fewer than 2 heaps are requested
+     */
+    public static <E extends Comparable<E>> ConcurrentMinHeap<E> relaxed(int queues) {
+        if (queues < 2) {
+            throw new IllegalArgumentException("A relaxed queue needs at least 2 heaps.");
+        }
+        return new ConcurrentMinHeap<>(queues);
+    }
+
+    /**
+     * Returns whether this queue always polls a smallest element.
+     *
+     * @return true in strict mode, false in relaxed mode
+     */
+    public boolean isStrict() {
+        return skipList != null;
+    }
+
+    /**
+     * Inserts the specified element into the queue.
+     *
+     * @param element the element to be added.
+     * @return true if the element was successfully added.
+     * @throws IllegalArgumentException if the specified element is null.
+     */
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Null elements are not allowed in ConcurrentMinHeap.");
+        }
+        if (skipList != null) {
+            skipList.add(new Entry<>(element, sequence.getAndIncrement()));
+        } else {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int i = random.nextInt(heaps.length);
+            while (!locks[i].tryLock()) {
+                i = random.nextInt(heaps.length); // Busy; try another heap instead of waiting.
+            }
+            try {
+                heaps[i].offer(element);
+                heads.set(i, heaps[i].peek());
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        count.increment();
+        return true;
+    }
+
+    /**
+     * Retrieves and removes a smallest element (strict mode) or one of the smallest
+     * elements (relaxed mode).
+     *
+     * @return the polled element, or null if the queue is empty.
+     */
+    @Override
+    public E poll() {
+        E result;
+        if (skipList != null) {
+            Entry<E> entry = skipList.pollFirst();
+            result = entry == null ? null : entry.element;
+        } else {
+            result = pollRelaxed();
+        }
+        if (result != null) {
+            count.decrement();
+        }
+        return result;
+    }
+
+    /**
+     * Polls the better of two randomly chosen heaps, falling back to a full sweep
+     * before reporting the queue as empty.
+     *
+     * @return the polled element, or null if every heap was empty.
+     */
+    private E pollRelaxed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < heaps.length; attempt++) {
+            int a = random.nextInt(heaps.length);
+            int b = random.nextInt(heaps.length);
+            E headA = heads.get(a);
+            E headB = heads.get(b);
+            int i = headB == null || (headA != null && headA.compareTo(headB) <= 0) ? a : b;
+            if (heads.get(i) == null || !locks[i].tryLock()) {
+                continue;
+            }
+            try {
+                E result = heaps[i].poll();
+                heads.set(i, heaps[i].peek());
+                if (result != null) {
+                    return result;
+                }
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        for (int i = 0; i < heaps.length; i++) {
+            locks[i].lock();
+            try {
+                E result = heaps[i].poll();
+                heads.set(i, heaps[i].peek());
+                if (result != null) {
+                    return result;
+                }
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves, but does not remove, the element the queue would most likely poll next.
+     * In relaxed mode this is the smallest published head, which may be momentarily stale.
+     *
+     * @return the head of the queue, or null if the queue is empty.
+     */
+    @Override
+    public E peek() {
+        if (skipList != null) {
+            Entry<E> entry = firstOrNull();
+            return entry == null ? null : entry.element;
+        }
+        E best = null;
+        for (int i = 0; i < heaps.length; i++) {
+            E head = heads.get(i);
+            if (head != null && (best == null || head.compareTo(best) < 0)) {
+                best = head;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the first skip list entry, tolerating a concurrent poll emptying the list.
+     *
+     * @return the first entry, or null if the list became empty.
+     */
+    private Entry<E> firstOrNull() {
+        try {
+            return skipList.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of elements in the queue.
+     *
+     * @return the size of the queue.
+     */
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, count.sum()));
+    }
+
+    /**
+     * Removes a single instance of the specified element, if it is present. This is a
+     * linear search, as in {@code PriorityBlockingQueue}.
+     *
+     * @param o the object to remove.
+     * @return true if the queue contained the specified object; false otherwise.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        boolean removed = false;
+        if (skipList != null) {
+            for (Entry<E> entry : skipList) {
+                if (entry.element.equals(o) && skipList.remove(entry)) {
+                    removed = true;
+                    break;
+                }
+            }
+        } else {
+            for (int i = 0; i < heaps.length && !removed; i++) {
+                locks[i].lock();
+                try {
+                    removed = heaps[i].remove(o);
+                    heads.set(i, heaps[i].peek());
+                } finally {
+                    locks[i].unlock();
+                }
+            }
+        }
+        if (removed) {
+            count.decrement();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements, in no particular order.
+     * In relaxed mode it walks a snapshot of each heap taken under that heap's lock.
+     * Removing through the iterator removes the very element last returned, not one
+     * equal to it, and does nothing if that element was polled in the meantime.
+     *
+     * @return an iterator over the elements in the queue.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        if (skipList != null) {
+            Iterator<Entry<E>> entries = skipList.iterator();
+            return new Iterator<E>() {
+                private Entry<E> last;
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    last = entries.next();
+                    return last.element;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException("Cannot remove element at this position.");
+                    }
+                    if (skipList.remove(last)) {
+                        count.decrement();
+                    }
+                    last = null;
+                }
+            };
+        }
+
+        ArrayList<E> snapshot = new ArrayList<>();
+        for (int i = 0; i < heaps.length; i++) {
+            locks[i].lock();
+            try {
+                snapshot.addAll(heaps[i]);
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        Iterator<E> source = snapshot.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = source.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException("Cannot remove element at this position.");
+                }
+                removeIdentical(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Removes the given instance from whichever heap holds it, in relaxed mode.
+     *
+     * @param element the element to remove.
+     */
+    private void removeIdentical(E element) {
+        for (int i = 0; i < heaps.length; i++) {
+            locks[i].lock();
+            try {
+                if (heaps[i].removeIdentical(element)) {
+                    heads.set(i, heaps[i].peek());
+                    count.decrement();
+                    return;
+                }
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * A test job. Its equality, like its order, ignores its id, so equal jobs can only
+     * be told apart by identity.
+     */
+    private static final class Job implements Comparable<Job> {
+        /**
+         * The priority of the job.
+         */
+        final int priority;
+
+        /**
+         * The unique id of the job.
+         */
+        final int id;
+
+        /**
+         * Constructs a job.
+         *
+         * @param priority the priority of the job
+         * @param id the unique id of the job
+         */
+        Job(int priority, int id) {
+            this.priority = priority;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            return Integer.compare(priority, other.priority);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Job && ((Job) o).priority == priority;
+        }
+
+        @Override
+        public int hashCode() {
+            return priority;
+        }
+    }
+
+    /**
+     * Multi-threaded test of both modes: checks that removal through the iterator takes
+     * the iterated job rather than an equal one, that no job is lost or taken twice while
+     * producers, consumers and an iterator race, and that strict mode polls in order.
+     *
+     * @param args 0 - optional number of jobs
+     * @throws InterruptedException if interrupted while waiting for a worker
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int workers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        for (int mode = 0; mode < 2; mode++) {
+            String name = mode == 0 ? "strict" : "relaxed";
+
+            // The iterated job is removed, not the first one equal to it
+            ConcurrentMinHeap<Job> queue = mode == 0 ? strict() : relaxed();
+            Job[] equal = {new Job(5, 0), new Job(5, 1), new Job(5, 2)};
+            for (Job job : equal) {
+                queue.offer(job);
+            }
+            for (Iterator<Job> it = queue.iterator(); it.hasNext(); ) {
+                if (it.next() == equal[1]) {
+                    it.remove();
+                }
+            }
+            boolean identical = queue.size() == 2;
+            for (Job job = queue.poll(); job != null; job = queue.poll()) {
+                identical &= job != equal[1];
+            }
+            if (!identical) {
+                System.out.println("Fail (" + name + "): iterator removed a job equal to the iterated one");
+                return;
+            }
+
+            // Producers, consumers and an iterator that removes every third job race
+            ConcurrentMinHeap<Job> shared = mode == 0 ? strict() : relaxed();
+            AtomicIntegerArray polled = new AtomicIntegerArray(jobs);
+            AtomicIntegerArray attempted = new AtomicIntegerArray(jobs);
+            AtomicInteger producing = new AtomicInteger(workers / 2);
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < workers / 2; p++) {
+                int from = (int) ((long) jobs * p / (workers / 2));
+                int to = (int) ((long) jobs * (p + 1) / (workers / 2));
+                threads.add(new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int id = from; id < to; id++) {
+                        shared.offer(new Job(random.nextInt(64), id));
+                    }
+                    producing.decrementAndGet();
+                }));
+            }
+            for (int c = 0; c < workers - workers / 2; c++) {
+                threads.add(new Thread(() -> {
+                    for (;;) {
+                        boolean finished = producing.get() == 0;
+                        Job job = shared.poll();
+                        if (job != null) {
+                            polled.incrementAndGet(job.id);
+                        } else if (finished) {
+                            return;
+                        }
+                    }
+                }));
+            }
+            threads.add(new Thread(() -> {
+                while (producing.get() > 0 || !shared.isEmpty()) {
+                    for (Iterator<Job> it = shared.iterator(); it.hasNext(); ) {
+                        Job job = it.next();
+                        if (job.id % 3 == 0) {
+                            attempted.set(job.id, 1);
+                            it.remove();
+                        }
+                    }
+                }
+            }));
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (int id = 0; id < jobs; id++) {
+                if (polled.get(id) > 1) {
+                    System.out.println("Fail (" + name + "): job " + id + " was polled twice");
+                    return;
+                }
+                if (polled.get(id) == 0 && attempted.get(id) == 0) {
+                    System.out.println("Fail (" + name + "): job " + id + " was lost");
+                    return;
+                }
+            }
+            if (shared.count.sum() != 0 || shared.poll() != null) {
+                System.out.println("Fail (" + name + "): queue is not empty after draining");
+                return;
+            }
+            System.out.println("Yay " + (mode + 1) + ": " + name + " mode took each of " + jobs
+                    + " jobs exactly once under contention");
+        }
+
+        // Strict mode: once filled, every consumer sees its polls in order
+        ConcurrentMinHeap<Job> ordered = strict();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < workers; p++) {
+            int from = (int) ((long) jobs * p / workers);
+            int to = (int) ((long) jobs * (p + 1) / workers);
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int id = from; id < to; id++) {
+                    ordered.offer(new Job(random.nextInt(1000), id));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        threads.clear();
+        AtomicIntegerArray polled = new AtomicIntegerArray(jobs);
+        AtomicInteger outOfOrder = new AtomicInteger();
+        for (int c = 0; c < workers; c++) {
+            threads.add(new Thread(() -> {
+                int previous = Integer.MIN_VALUE;
+                for (Job job = ordered.poll(); job != null; job = ordered.poll()) {
+                    if (job.priority < previous) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    previous = job.priority;
+                    polled.incrementAndGet(job.id);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int id = 0; id < jobs; id++) {
+            if (polled.get(id) != 1) {
+                System.out.println("Fail (strict): job " + id + " was polled " + polled.get(id) + " times");
+                return;
+            }
+        }
+        if (outOfOrder.get() != 0) {
+            System.out.println("Fail (strict): " + outOfOrder.get() + " polls came out of order");
+            return;
+        }
+        System.out.println("Yay 3: strict mode polled " + jobs + " jobs in order across " + workers + " threads");
+    }
+}
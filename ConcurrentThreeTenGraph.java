@@ -0,0 +1,335 @@
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A {@link ThreeTenGraph} that can be mutated by one or more writer threads while any
+ * number of reader threads query it.
+ *
+ * <p>Writers take a lock, change a private {@code ThreeTenGraph}, and then publish a new
+ * immutable {@link FrozenGraph} snapshot through a volatile field. Readers never lock:
+ * {@link #snapshot()} returns the latest published snapshot, which stays consistent for
+ * as long as the reader holds it, however many writes happen meanwhile. Several related
+ * changes can be staged and published as one step with {@link #update(Consumer)}, so
+ * readers never see half of them.
+ *
+ * <p>Publishing a snapshot costs O(V + E), which suits graphs that are read far more
+ * often than they change.
+ *
+ * <p>Snapshots share their {@link Destination} objects with the private graph, whose
+ * writers may rewrite an edge's {@code node} or {@code priority} field without any
+ * synchronization with readers. A reader must therefore take an edge's endpoints and
+ * priority from its snapshot, for example {@code snapshot.getDest(edge)}, and never
+ * read {@code edge.node} or {@code edge.priority}, which may already belong to a later
+ * version.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class ConcurrentThreeTenGraph<V extends Comparable<V>> {
+    /**
+     * The graph that writers change, guarded by {@code writeLock}.
+     */
+    private final ThreeTenGraph<V> graph;
+
+    /**
+     * Serializes writers.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * The latest published snapshot.
+     */
+    private volatile FrozenGraph<V> snapshot;
+
+    /**
+     * The number of snapshots published after the initial one.
+     */
+    private volatile long version = 0;
+
+    /**
+     * Constructs an empty concurrent graph.
+     */
+    public ConcurrentThreeTenGraph() {
+        this.graph = new ThreeTenGraph<>();
+        this.snapshot = graph.freeze();
+    }
+
+    /**
+     * Returns the latest published snapshot without blocking. Queries made on the
+     * returned snapshot all see the same graph.
+     *
+     * @return the current snapshot
+     */
+    public FrozenGraph<V> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the number of snapshots published since this graph was created.
+     *
+     * @return the version of the current snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds a vertex and publishes the change.
+     *
+     * @param vertex the vertex to add
+     * @return true if the vertex was added; false if it was already present
+     * @throws IllegalArgumentException if the vertex is null
+     */
+    public boolean addVertex(V vertex) {
+        writeLock.lock();
+        try {
+            return publishIf(graph.addVertex(vertex));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds an edge and publishes the change.
+     *
+     * @param e  the edge to add
+     * @param v1 the source vertex
+     * @param v2 the destination vertex
+     * @return true if the edge was added; false otherwise
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public boolean addEdge(Destination<V> e, V v1, V v2) {
+        writeLock.lock();
+        try {
+            return publishIf(graph.addEdge(e, v1, v2));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a vertex and its edges and publishes the change.
+     *
+     * @param vertex the vertex to remove
+     * @return true if the vertex was removed; false if it was not present
+     */
+    public boolean removeVertex(V vertex) {
+        writeLock.lock();
+        try {
+            return publishIf(graph.removeVertex(vertex));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes an edge and publishes the change.
+     *
+     * @param edge the edge to remove
+     * @return true if the edge was removed; false if it was not present
+     */
+    public boolean removeEdge(Destination<V> edge) {
+        writeLock.lock();
+        try {
+            return publishIf(graph.removeEdge(edge));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stages several changes in a {@link GraphBatch} and publishes them as one snapshot.
+     * Nothing is applied unless the action returns normally, so an action that throws
+     * leaves both the graph and the published snapshot unchanged. The batch passed to
+     * the action must not be used after it returns.
+     *
+     * @param changes the action that stages the changes
+     * @throws IllegalArgumentException if changes is null
+     */
+    public void update(Consumer<? super GraphBatch<V>> changes) {
+        if (changes == null) {
+            throw new IllegalArgumentException("Changes cannot be null");
+        }
+        writeLock.lock();
+        try {
+            GraphBatch<V> batch = graph.batch();
+            changes.accept(batch);
+            publishIf(batch.apply() > 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the predecessors of a vertex in the current snapshot, without blocking.
+     *
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return the predecessors of the vertex
+     */
+    public Collection<V> getPredecessors(V vertex) {
+        return snapshot.getPredecessors(vertex);
+    }
+
+    /**
+     * Topologically sorts the current snapshot, without blocking.
+     *
+     * @param startNode the node to begin the sorting
+     * @return the nodes in topological order
+     * @throws IllegalArgumentException if the startNode is null or not in the snapshot,
+     *                                  or the snapshot contains a cycle
+     */
+    public LinkedList<V> topologicalSort(V startNode) {
+        return TopologicalSort.topologicalSort(snapshot, startNode);
+    }
+
+    /**
+     * Publishes a new snapshot if the graph changed. Must be called with the lock held.
+     *
+     * @param changed whether the graph changed
+     * @return the value of {@code changed}
+     */
+    private boolean publishIf(boolean changed) {
+        if (changed) {
+            snapshot = graph.freeze();
+            version++;
+        }
+        return changed;
+    }
+
+    //********************************************************************************
+    //   testing code goes here... edit this as much as you want!
+    //********************************************************************************
+
+    /**
+     * Stress test: one writer thread builds and tears down vertex pairs while reader
+     * threads check that every snapshot they see is consistent.
+     *
+     * <p>The writer adds {@code a<k>} and {@code b<k>} with an edge {@code a<k> -> b<k>} in
+     * one {@link #update(Consumer)}, chains each {@code a<k>} after {@code a<k-1>} with
+     * individual writes, and removes old {@code b<k>} vertices. Readers check that a
+     * {@code b<k>} never appears without its edge from {@code a<k>}, that edge and degree
+     * counts agree, and that the snapshot always sorts with every edge pointing forward.
+     * Finally checks that an update whose action throws is not applied.
+     *
+     * @param args 0 - optional number of reader threads, 1 - optional number of pairs
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int pairs = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        ConcurrentThreeTenGraph<String> graph = new ConcurrentThreeTenGraph<>();
+        graph.addVertex("root");
+        String[] failure = new String[1];
+        long[] checked = new long[1];
+
+        Thread writer = new Thread(() -> {
+            for (int k = 0; k < pairs; k++) {
+                String a = "a" + k;
+                String b = "b" + k;
+                int priority = k;
+                graph.update(g -> {
+                    g.addVertex(a);
+                    g.addVertex(b);
+                    g.addEdge(new Destination<>(null, priority), a, b);
+                });
+                graph.addEdge(new Destination<>(null, 0), k == 0 ? "root" : "a" + (k - 1), a);
+                if (k >= 50) {
+                    graph.removeVertex("b" + (k - 50));
+                }
+            }
+        });
+
+        Thread[] workers = new Thread[readers];
+        for (int t = 0; t < readers; t++) {
+            workers[t] = new Thread(() -> {
+                long count = 0;
+                while (writer.isAlive() && failure[0] == null) {
+                    String problem = checkSnapshot(graph.snapshot());
+                    if (problem != null) {
+                        failure[0] = problem;
+                    }
+                    count++;
+                }
+                synchronized (checked) {
+                    checked[0] += count;
+                }
+            });
+        }
+
+        writer.start();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        writer.join();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (failure[0] == null) {
+            failure[0] = checkSnapshot(graph.snapshot());
+        }
+        if (failure[0] == null) {
+            System.out.println("Yay 1: " + checked[0] + " snapshots were consistent across "
+                    + graph.getVersion() + " versions");
+        } else {
+            System.out.println("Inconsistent snapshot: " + failure[0]);
+        }
+
+        // An update that throws is not applied, neither to the snapshot nor to the graph
+        FrozenGraph<String> before = graph.snapshot();
+        try {
+            graph.update(batch -> {
+                batch.addVertex("abandoned");
+                throw new IllegalStateException("Changed my mind");
+            });
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        boolean unpublished = graph.snapshot() == before;
+        graph.addVertex("after");
+        if (unpublished && !graph.snapshot().containsVertex("abandoned") && graph.snapshot().containsVertex("after")) {
+            System.out.println("Yay 2: a throwing update changed nothing");
+        }
+    }
+
+    /**
+     * Checks the invariants kept by the stress test's writer.
+     *
+     * @param snapshot the snapshot to check
+     * @return a description of the first broken invariant, or null if there is none
+     */
+    private static String checkSnapshot(FrozenGraph<String> snapshot) {
+        int degrees = 0;
+        for (String v : snapshot.getVertices()) {
+            degrees += snapshot.outDegree(v);
+            if (v.startsWith("b") && snapshot.findEdge("a" + v.substring(1), v) == null) {
+                return v + " is present without its edge";
+            }
+        }
+        if (degrees != snapshot.getEdgeCount()) {
+            return "edge count " + snapshot.getEdgeCount() + " but out-degrees sum to " + degrees;
+        }
+        LinkedList<String> order;
+        try {
+            order = TopologicalSort.topologicalSort(snapshot, "root");
+        } catch (IllegalArgumentException e) {
+            return "sort failed: " + e.getMessage();
+        }
+        if (order.size() != snapshot.getVertexCount()) {
+            return "sort returned " + order.size() + " of " + snapshot.getVertexCount() + " vertices";
+        }
+        int[] position = new int[snapshot.getVertexCount()];
+        int i = 0;
+        for (String v : order) {
+            position[snapshot.idOf(v)] = i++;
+        }
+        for (Destination<String> edge : snapshot.getEdges()) {
+            String target = snapshot.getDest(edge); // Never edge.node, which writers may change
+            if (position[snapshot.idOf(snapshot.getSource(edge))] >= position[snapshot.idOf(target)]) {
+                return "edge " + snapshot.getSource(edge) + " -> " + target + " points backwards";
+            }
+        }
+        return null;
+    }
+}
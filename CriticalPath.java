@@ -0,0 +1,323 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Longest paths, earliest and latest starts, slack and a critical path over a
+ * {@link FrozenGraph}, treating each edge's {@link Destination#priority} as the time
+ * that must pass between its source and its target. Create one with
+ * {@link TopologicalSort#criticalPath} or {@link TopologicalSort#criticalPaths}.
+ *
+ * <p>A plan covers either the whole graph, where every vertex without predecessors
+ * starts at time 0, or the vertices reachable from one start vertex, which starts at
+ * time 0. A vertex's earliest start is the length of the longest path reaching it, and
+ * its latest start is the latest time it can begin without delaying the end of the plan.
+ * Vertices whose slack, the difference between the two, is zero are critical.
+ *
+ * <p>The values are computed by dynamic programming in one forward and one backward pass
+ * over a topological order, O(V + E), in primitive arrays indexed by vertex id. The
+ * order is shared, so plans for many start vertices can be computed side by side.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class CriticalPath<V extends Comparable<V>> {
+    /**
+     * Marks a vertex outside the plan in {@code earliest}.
+     */
+    private static final long UNREACHED = Long.MIN_VALUE;
+
+    /**
+     * The graph the plan was computed for.
+     */
+    private final FrozenGraph<V> graph;
+
+    /**
+     * The earliest start of each vertex id, or {@code UNREACHED}.
+     */
+    private final long[] earliest;
+
+    /**
+     * The latest start of each vertex id in the plan.
+     */
+    private final long[] latest;
+
+    /**
+     * The predecessor of each vertex id on a longest path reaching it, or -1.
+     */
+    private final int[] previous;
+
+    /**
+     * The length of the plan: the largest earliest start.
+     */
+    private final long length;
+
+    /**
+     * The id where a longest path of the plan ends, or -1 for an empty plan.
+     */
+    private final int end;
+
+    /**
+     * Constructs the result of a plan.
+     *
+     * @param graph the graph that was planned
+     * @param earliest the earliest start of each id
+     * @param latest the latest start of each id
+     * @param previous the predecessor of each id on a longest path
+     * @param length the length of the plan
+     * @param end the id where a longest path ends
+     */
+    private CriticalPath(FrozenGraph<V> graph, long[] earliest, long[] latest, int[] previous,
+            long length, int end) {
+        this.graph = graph;
+        this.earliest = earliest;
+        this.latest = latest;
+        this.previous = previous;
+        this.length = length;
+        this.end = end;
+    }
+
+    /**
+     * Returns the ids of a frozen graph in the topological order of
+     * {@link TopologicalSort#priorityIterator(FrozenGraph)}.
+     *
+     * @param <V> the type of vertices in the graph
+     * @param graph the graph to order
+     * @return every id, in topological order
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    static <V extends Comparable<V>> int[] topologicalIds(FrozenGraph<V> graph) {
+        int[] order = new int[graph.getVertexCount()];
+        int pos = 0;
+        for (Iterator<V> it = TopologicalSort.priorityIterator(graph); it.hasNext(); ) {
+            order[pos++] = graph.idOf(it.next());
+        }
+        return order;
+    }
+
+    /**
+     * Computes a plan from a topological order of the graph's ids.
+     *
+     * @param <V> the type of vertices in the graph
+     * @param graph the graph to plan
+     * @param order every id, in topological order
+     * @param start the id of the start vertex, or -1 to start from every source
+     * @return the plan
+     */
+    static <V extends Comparable<V>> CriticalPath<V> compute(FrozenGraph<V> graph, int[] order, int start) {
+        int n = order.length;
+        long[] earliest = new long[n];
+        long[] latest = new long[n];
+        int[] previous = new int[n];
+        Arrays.fill(previous, -1);
+
+        int first = 0;
+        if (start < 0) {
+            for (int id = 0; id < n; id++) {
+                earliest[id] = graph.inEnd(id) == graph.inStart(id) ? 0 : UNREACHED;
+            }
+        } else {
+            Arrays.fill(earliest, UNREACHED);
+            earliest[start] = 0;
+            while (order[first] != start) {
+                first++; // Nothing before the start in the order can be reached from it
+            }
+        }
+
+        // Forward pass: earliest start is the longest path reaching each vertex
+        long length = UNREACHED;
+        int end = -1;
+        for (int i = first; i < n; i++) {
+            int current = order[i];
+            long time = earliest[current];
+            if (time == UNREACHED) {
+                continue;
+            }
+            if (time > length) {
+                length = time;
+                end = current;
+            }
+            for (int pos = graph.outStart(current); pos < graph.outEnd(current); pos++) {
+                int neighbor = graph.target(pos);
+                long arrival = time + graph.priority(pos);
+                if (earliest[neighbor] == UNREACHED || arrival > earliest[neighbor]) {
+                    earliest[neighbor] = arrival;
+                    previous[neighbor] = current;
+                }
+            }
+        }
+
+        // Backward pass: latest start is the tightest deadline set by the successors
+        for (int i = n - 1; i >= first; i--) {
+            int current = order[i];
+            if (earliest[current] == UNREACHED) {
+                continue;
+            }
+            long deadline = length;
+            for (int pos = graph.outStart(current); pos < graph.outEnd(current); pos++) {
+                deadline = Math.min(deadline, latest[graph.target(pos)] - graph.priority(pos));
+            }
+            latest[current] = deadline;
+        }
+
+        return new CriticalPath<>(graph, earliest, latest, previous, length, end);
+    }
+
+    /**
+     * Returns the length of the plan: the longest path from its start to any vertex.
+     *
+     * @return the length of the plan, or 0 if it is empty
+     */
+    public long getLength() {
+        return end < 0 ? 0 : length;
+    }
+
+    /**
+     * Returns whether a vertex is part of the plan.
+     *
+     * @param vertex the vertex
+     * @return true if the vertex is in the graph and reachable from the plan's start
+     */
+    public boolean contains(V vertex) {
+        int id = graph.idOf(vertex);
+        return id >= 0 && earliest[id] != UNREACHED;
+    }
+
+    /**
+     * Returns the earliest time a vertex can start: the length of the longest path from
+     * the plan's start to it.
+     *
+     * @param vertex the vertex
+     * @return the earliest start of the vertex
+     * @throws IllegalArgumentException if the vertex is not part of the plan
+     */
+    public long earliestStart(V vertex) {
+        return earliest[planned(vertex)];
+    }
+
+    /**
+     * Returns the latest time a vertex can start without lengthening the plan.
+     *
+     * @param vertex the vertex
+     * @return the latest start of the vertex
+     * @throws IllegalArgumentException if the vertex is not part of the plan
+     */
+    public long latestStart(V vertex) {
+        return latest[planned(vertex)];
+    }
+
+    /**
+     * Returns how long a vertex can be delayed without lengthening the plan.
+     *
+     * @param vertex the vertex
+     * @return the latest start minus the earliest start
+     * @throws IllegalArgumentException if the vertex is not part of the plan
+     */
+    public long slack(V vertex) {
+        int id = planned(vertex);
+        return latest[id] - earliest[id];
+    }
+
+    /**
+     * Returns whether a vertex has no slack, so any delay to it delays the plan.
+     *
+     * @param vertex the vertex
+     * @return true if the vertex is critical
+     * @throws IllegalArgumentException if the vertex is not part of the plan
+     */
+    public boolean isCritical(V vertex) {
+        return slack(vertex) == 0;
+    }
+
+    /**
+     * Returns a longest path of the plan, from a start vertex to a vertex whose earliest
+     * start equals the plan's length. Every vertex on it is critical.
+     *
+     * @return the vertices of a critical path, or an empty list for an empty plan
+     */
+    public List<V> getCriticalPath() {
+        ArrayList<V> path = new ArrayList<>();
+        for (int id = end; id >= 0; id = previous[id]) {
+            path.add(graph.vertexAt(id));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns the id of a vertex in the plan.
+     *
+     * @param vertex the vertex
+     * @return its id
+     * @throws IllegalArgumentException if the vertex is not part of the plan
+     */
+    private int planned(V vertex) {
+        int id = graph.idOf(vertex);
+        if (id < 0 || earliest[id] == UNREACHED) {
+            throw new IllegalArgumentException("Vertex is not part of the plan");
+        }
+        return id;
+    }
+
+    /**
+     * Tests plans of a small hand-worked DAG, for the whole graph and from one start
+     * vertex, and that a cyclic graph is rejected.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        // S -3-> A -4-> C -2-> E -2-> T, with a slower branch S -2-> B -5-> D -1-> E,
+        // a shortcut B -1-> C, and a second source X -1-> E
+        ThreeTenGraph<String> graph = new ThreeTenGraph<>();
+        for (String v : new String[] {"S", "A", "B", "C", "D", "E", "T", "X"}) {
+            graph.addVertex(v);
+        }
+        String[][] edges = {
+            {"S", "A", "3"}, {"S", "B", "2"}, {"A", "C", "4"}, {"B", "C", "1"},
+            {"B", "D", "5"}, {"C", "E", "2"}, {"D", "E", "1"}, {"E", "T", "2"}, {"X", "E", "1"},
+        };
+        for (String[] e : edges) {
+            graph.addEdge(new Destination<>(e[1], Integer.parseInt(e[2])), e[0], e[1]);
+        }
+
+        // Worked by hand: earliest, latest and slack of S, A, B, C, D, E, T, X
+        String[] vertices = {"S", "A", "B", "C", "D", "E", "T", "X"};
+        long[] earliest = {0, 3, 2, 7, 7, 9, 11, 0};
+        long[] latest = {0, 3, 3, 7, 8, 9, 11, 8};
+        CriticalPath<String> plan = TopologicalSort.criticalPath(graph);
+        boolean times = plan.getLength() == 11;
+        for (int i = 0; i < vertices.length; i++) {
+            times &= plan.earliestStart(vertices[i]) == earliest[i] && plan.latestStart(vertices[i]) == latest[i]
+                    && plan.slack(vertices[i]) == latest[i] - earliest[i];
+        }
+        if (times) {
+            System.out.println("Yay 1: earliest and latest starts and slack match the worked plan");
+        }
+        if (plan.getCriticalPath().equals(Arrays.asList("S", "A", "C", "E", "T"))
+                && plan.isCritical("C") && !plan.isCritical("B") && !plan.isCritical("X")) {
+            System.out.println("Yay 2: critical path is S A C E T");
+        }
+
+        // From B alone: C 1, D 5, E max(1 + 2, 5 + 1) = 6, T 8
+        CriticalPath<String> fromB = TopologicalSort.criticalPaths(graph, Arrays.asList("B")).get("B");
+        boolean rejected = false;
+        try {
+            fromB.slack("A");
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        if (fromB.getLength() == 8 && fromB.getCriticalPath().equals(Arrays.asList("B", "D", "E", "T"))
+                && fromB.slack("C") == 3 && fromB.slack("D") == 0 && !fromB.contains("S")
+                && !fromB.contains("X") && rejected) {
+            System.out.println("Yay 3: plan from B covers only what B reaches");
+        }
+
+        graph.addEdge(new Destination<>("S", 1), "T", "S");
+        try {
+            TopologicalSort.criticalPath(graph);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Yay 4: cyclic graph rejected");
+        }
+    }
+}
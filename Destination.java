@@ -15,6 +15,11 @@ class Destination<V> implements Comparable<Destination<V>> {
      */
     Integer priority;
 
+    /**
+     * The slot this destination occupies in a {@link DestinationHeap}, or -1.
+     */
+    int slot = -1;
+
     /**
      * Constructs a new {@code Destination} with the specified node and priority.
      *
@@ -0,0 +1,501 @@
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * A priority queue of {@link Destination} edges backed by an {@link IntKeyMinHeap}.
+ * Each edge is parked in a slot table and only its slot number and unboxed priority
+ * take part in the heap, so sifting compares plain ints instead of calling
+ * {@code Integer.compareTo} through two object references.
+ *
+ * <p>This is a drop-in adjacency heap for {@link ThreeTenGraph}:
+ * {@code new ThreeTenGraph<>(DestinationHeap::new)}. The priority of an edge is read
+ * when it is inserted; call {@link #updatePriority(Destination)} after changing it.
+ *
+ * <p>Each edge records its own slot number in {@link Destination#slot}, so locating an
+ * edge needs no map and moving it boxes nothing. An edge can therefore be held by only
+ * one DestinationHeap at a time, as it is in a graph, where each edge has one source;
+ * offering an edge that another DestinationHeap holds is rejected.
+ *
+ * @param <V> the type of the node of the edges held in this heap
+ */
+class DestinationHeap<V> extends AbstractQueue<Destination<V>> {
+    /**
+     * The default initial capacity of the slot table when empty.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 11;
+
+    /**
+     * The primitive heap ordering slot numbers by edge priority.
+     */
+    private final IntKeyMinHeap heap;
+
+    /**
+     * The edges by slot number.
+     */
+    private Destination<V>[] edges;
+
+    /**
+     * Slot numbers released by removed edges, ready for reuse.
+     */
+    private int[] freeSlots = new int[DEFAULT_INITIAL_CAPACITY];
+
+    /**
+     * The number of entries in {@code freeSlots}.
+     */
+    private int freeCount = 0;
+
+    /**
+     * The lowest slot number that has never been handed out.
+     */
+    private int nextSlot = 0;
+
+    /**
+     * Constructs an empty DestinationHeap backed by an on-heap {@link IntKeyMinHeap}.
+     */
+    public DestinationHeap() {
+        this(new IntKeyMinHeap(DEFAULT_INITIAL_CAPACITY));
+    }
+
+    /**
+     * Constructs an empty DestinationHeap on top of the given primitive heap.
+     *
+     * @param heap an empty heap used to order slot numbers.
+     */
+    @SuppressWarnings("unchecked")
+    DestinationHeap(IntKeyMinHeap heap) {
+        this.heap = heap;
+        this.edges = (Destination<V>[]) new Destination[DEFAULT_INITIAL_CAPACITY];
+    }
+
+    /**
+     * Inserts the specified edge into the heap.
+     *
+     * @param edge the edge to be added to the heap.
+     * @return true if the edge was successfully added.
+     * @throws IllegalArgumentException if the edge is null, already in this heap, or
+     *                                  held by another DestinationHeap.
+     */
+    @Override
+    public boolean offer(Destination<V> edge) {
+        if (edge == null) {
+            throw new IllegalArgumentException("Null elements are not allowed in DestinationHeap.");
+        }
+        if (holds(edge)) {
+            throw new IllegalArgumentException("Edge is already in the DestinationHeap.");
+        }
+        if (edge.slot >= 0) {
+            throw new IllegalArgumentException("Edge is held by another DestinationHeap.");
+        }
+        int slot = acquireSlot();
+        edges[slot] = edge;
+        edge.slot = slot;
+        heap.offer(slot, edge.priority);
+        return true;
+    }
+
+    /**
+     * Inserts a batch of edges. Their slots and priorities are handed to
+     * {@link IntKeyMinHeap#addAll(int[], int[])} together, so a large batch is
+     * heapified bottom-up in O(n + k) instead of k offers. Nothing is added if any
+     * edge is rejected.
+     *
+     * @param c the edges to be added to the heap.
+     * @return true if the heap changed as a result of the call.
+     * @throws IllegalArgumentException if the collection is this heap, or an edge is
+     *                                  null, already in the heap, repeated, or held
+     *                                  by another DestinationHeap.
+     */
+    @Override
+    public boolean addAll(Collection<? extends Destination<V>> c) {
+        if (c == this) {
+            throw new IllegalArgumentException("Cannot add a heap to itself.");
+        }
+        int[] slots = new int[c.size()];
+        int[] priorities = new int[slots.length];
+        int count = 0;
+        for (Destination<V> edge : c) {
+            if (edge == null || edge.slot >= 0) {
+                for (int i = count - 1; i >= 0; i--) {
+                    releaseSlot(slots[i]); // Undo the edges parked so far
+                }
+                throw new IllegalArgumentException(edge == null
+                        ? "Null elements are not allowed in DestinationHeap."
+                        : holds(edge) ? "Edge is already in the DestinationHeap."
+                        : "Edge is held by another DestinationHeap.");
+            }
+            int slot = acquireSlot();
+            edges[slot] = edge;
+            edge.slot = slot;
+            slots[count] = slot;
+            priorities[count++] = edge.priority;
+        }
+        return heap.addAll(slots, priorities);
+    }
+
+    /**
+     * Retrieves and removes the edge with the smallest priority.
+     *
+     * @return the smallest edge, or null if the heap is empty.
+     */
+    @Override
+    public Destination<V> poll() {
+        int slot = heap.poll();
+        if (slot < 0) {
+            return null;
+        }
+        return releaseSlot(slot);
+    }
+
+    /**
+     * Retrieves, but does not remove, the edge with the smallest priority.
+     *
+     * @return the smallest edge, or null if the heap is empty.
+     */
+    @Override
+    public Destination<V> peek() {
+        int slot = heap.peek();
+        return slot < 0 ? null : edges[slot];
+    }
+
+    /**
+     * Returns the number of edges in the heap.
+     *
+     * @return the size of the heap.
+     */
+    @Override
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Checks if the heap contains the specified edge in constant time.
+     *
+     * @param o the object to search for in the heap.
+     * @return true if the heap contains the specified object; false otherwise.
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Destination && holds((Destination<?>) o);
+    }
+
+    /**
+     * Removes the specified edge from the heap in O(log n), if it is present.
+     *
+     * @param o the object to remove from the heap.
+     * @return true if the heap contained the specified object; false otherwise.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        int slot = ((Destination<?>) o).slot;
+        heap.remove(slot);
+        releaseSlot(slot);
+        return true;
+    }
+
+    /**
+     * Restores the heap order after the priority of the specified edge has changed.
+     *
+     * @param edge the edge whose priority was changed.
+     * @return true if the heap contained the edge; false otherwise.
+     */
+    public boolean updatePriority(Destination<V> edge) {
+        return edge != null && holds(edge) && heap.updatePriority(edge.slot, edge.priority);
+    }
+
+    /**
+     * Removes all edges that satisfy the given predicate, in O(k log n) for k matches.
+     *
+     * @param filter a predicate which returns true for edges to be removed.
+     * @return true if any edges were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Destination<V>> filter) {
+        int[] matches = new int[heap.size()];
+        int count = 0;
+        for (int i = 0; i < heap.size(); i++) {
+            int slot = heap.idAt(i);
+            if (filter.test(edges[slot])) {
+                matches[count++] = slot;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            heap.remove(matches[i]);
+            releaseSlot(matches[i]);
+        }
+        return count > 0;
+    }
+
+    /**
+     * Removes all edges contained in the specified collection, in O(k log n) for k matches.
+     *
+     * @param c the collection of edges to be removed.
+     * @return true if any edges were removed.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeIf(c::contains);
+    }
+
+    /**
+     * Removes all edges from the heap.
+     */
+    @Override
+    public void clear() {
+        heap.clear();
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (edges[slot] != null) {
+                edges[slot].slot = -1;
+                edges[slot] = null;
+            }
+        }
+        freeCount = 0;
+        nextSlot = 0;
+    }
+
+    /**
+     * Returns an iterator over the edges in the heap, in the heap's array order.
+     * Removing through the iterator visits every remaining edge exactly once, as in
+     * {@code java.util.PriorityQueue}.
+     *
+     * @return an iterator over the edges in the heap.
+     */
+    @Override
+    public Iterator<Destination<V>> iterator() {
+        return new Iterator<Destination<V>>() {
+            /**
+             * The heap index of the next edge to return from the array.
+             */
+            private int cursor = 0;
+
+            /**
+             * The heap index of the edge last returned from the array, or -1.
+             */
+            private int lastRet = -1;
+
+            /**
+             * Edges moved from beyond the cursor to before it by a removal.
+             */
+            private ArrayDeque<Destination<V>> forgotten;
+
+            /**
+             * The forgotten edge last returned, or null.
+             */
+            private Destination<V> lastRetForgotten;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < heap.size() || (forgotten != null && !forgotten.isEmpty());
+            }
+
+            @Override
+            public Destination<V> next() {
+                if (cursor < heap.size()) {
+                    lastRet = cursor++;
+                    return edges[heap.idAt(lastRet)];
+                }
+                if (forgotten != null && !forgotten.isEmpty()) {
+                    lastRet = -1;
+                    lastRetForgotten = forgotten.poll();
+                    return lastRetForgotten;
+                }
+                throw new NoSuchElementException("No more elements in the heap.");
+            }
+
+            @Override
+            public void remove() {
+                if (lastRet >= 0) {
+                    int slot = heap.idAt(lastRet);
+                    int moved = heap.removeAt(lastRet);
+                    releaseSlot(slot);
+                    lastRet = -1;
+                    if (moved < 0) {
+                        cursor--; // The hole was refilled from beyond the cursor
+                    } else {
+                        if (forgotten == null) {
+                            forgotten = new ArrayDeque<>();
+                        }
+                        forgotten.add(edges[moved]);
+                    }
+                } else if (lastRetForgotten != null) {
+                    DestinationHeap.this.remove(lastRetForgotten);
+                    lastRetForgotten = null;
+                } else {
+                    throw new IllegalStateException("Cannot remove element at this position.");
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks whether an edge occupies a slot of this heap, in constant time.
+     *
+     * @param edge the edge to look up.
+     * @return true if the edge is in this heap.
+     */
+    private boolean holds(Destination<?> edge) {
+        int slot = edge.slot;
+        return slot >= 0 && slot < nextSlot && edges[slot] == edge;
+    }
+
+    /**
+     * Hands out a free slot number, growing the slot table if needed.
+     *
+     * @return an unused slot number.
+     */
+    private int acquireSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        return nextSlot++;
+    }
+
+    /**
+     * Clears a slot and returns its number to the free list.
+     *
+     * @param slot the slot to release.
+     * @return the edge that occupied the slot.
+     */
+    private Destination<V> releaseSlot(int slot) {
+        Destination<V> edge = edges[slot];
+        edges[slot] = null;
+        edge.slot = -1;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return edge;
+    }
+
+    /**
+     * Randomized test of removal through the iterator: removes every edge with an even
+     * priority from random heaps and checks that each edge was visited exactly once,
+     * that the rest still poll in order, and that a repeated remove() is rejected.
+     *
+     * @param args 0 - optional number of trials
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = 3103;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = (int) (seed >>> 58);
+            DestinationHeap<String> heap = new DestinationHeap<>();
+            for (int i = 0; i < n; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                heap.offer(new Destination<>("v" + i, (int) (seed >>> 59)));
+            }
+
+            boolean[] seen = new boolean[n];
+            int odd = 0;
+            for (Iterator<Destination<String>> it = heap.iterator(); it.hasNext(); ) {
+                Destination<String> edge = it.next();
+                int i = Integer.parseInt(edge.node.substring(1));
+                if (seen[i]) {
+                    System.out.println("Trial " + trial + ": an edge was visited twice");
+                    return;
+                }
+                seen[i] = true;
+                if (edge.priority % 2 == 0) {
+                    it.remove();
+                    try {
+                        it.remove();
+                        System.out.println("Trial " + trial + ": a repeated remove() was accepted");
+                        return;
+                    } catch (IllegalStateException e) {
+                        // Expected: the edge is already gone
+                    }
+                } else {
+                    odd++;
+                }
+            }
+
+            for (boolean s : seen) {
+                if (!s) {
+                    System.out.println("Trial " + trial + ": an edge was skipped");
+                    return;
+                }
+            }
+            int last = Integer.MIN_VALUE;
+            for (Destination<String> edge = heap.poll(); edge != null; edge = heap.poll(), odd--) {
+                if (edge.priority % 2 == 0 || edge.priority < last) {
+                    System.out.println("Trial " + trial + ": heap left in a bad state");
+                    return;
+                }
+                last = edge.priority;
+            }
+            if (odd != 0) {
+                System.out.println("Trial " + trial + ": an edge was lost");
+                return;
+            }
+        }
+        System.out.println("Yay 1: iterator removal visited every edge once in " + trials + " trials");
+
+        // Bulk insertion, small and large relative to the heap
+        DestinationHeap<String> bulk = new DestinationHeap<>();
+        for (int round = 0; round < 50; round++) {
+            ArrayList<Destination<String>> batch = new ArrayList<>();
+            int k = round % 10 == 0 ? 200 : 3;
+            for (int i = 0; i < k; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                batch.add(new Destination<>("b" + round + "_" + i, (int) (seed >>> 40)));
+            }
+            bulk.addAll(batch);
+        }
+        Destination<String> repeated = new Destination<>("r", 0);
+        try {
+            bulk.addAll(Arrays.asList(new Destination<>("s", 0), repeated, repeated));
+            System.out.println("Trial bulk: a repeated edge was accepted");
+            return;
+        } catch (IllegalArgumentException e) {
+            // Expected: nothing from the rejected batch is kept
+        }
+        int expected = 5 * 200 + 45 * 3;
+        int last = Integer.MIN_VALUE;
+        for (Destination<String> edge = bulk.poll(); edge != null; edge = bulk.poll(), expected--) {
+            if (edge.priority < last || edge.node.equals("s") || edge.slot != -1) {
+                System.out.println("Trial bulk: addAll left the heap in a bad state");
+                return;
+            }
+            last = edge.priority;
+        }
+        if (expected == 0 && repeated.slot == -1) {
+            System.out.println("Yay 2: addAll keeps heap order and rejects a bad batch whole");
+        }
+
+        // An edge belongs to one heap at a time
+        DestinationHeap<String> first = new DestinationHeap<>();
+        DestinationHeap<String> second = new DestinationHeap<>();
+        Destination<String> shared = new Destination<>("shared", 1);
+        second.offer(new Destination<>("own", 2)); // Gives slot 0 to another edge
+        first.offer(shared);
+        try {
+            second.offer(shared);
+            System.out.println("Trial shared: an edge of another heap was accepted");
+            return;
+        } catch (IllegalArgumentException e) {
+            // Expected: the edge keeps its slot in the first heap
+        }
+        try {
+            second.addAll(Arrays.asList(new Destination<>("fresh", 3), shared));
+            System.out.println("Trial shared: addAll accepted an edge of another heap");
+            return;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        if (first.remove(shared) && second.size() == 1 && second.offer(shared)) {
+            System.out.println("Yay 3: an edge held by another heap is rejected until released");
+        }
+    }
+}
@@ -0,0 +1,345 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * The out-edges of one vertex in a {@link ThreeTenGraph}, keyed by the interned id of
+ * each edge's target in an open-addressing hash table.
+ *
+ * <p>Target ids and edges sit in two parallel arrays probed linearly, so a lookup or
+ * duplicate check is O(1) expected and costs no boxing and no per-edge node. Removal
+ * shifts later entries of the probe run back instead of leaving tombstones, so lookups
+ * never slow down after many removals. The table is allocated on the first insertion,
+ * so a vertex without out-edges holds no arrays.
+ *
+ * <p>Ordered traversals read a copy of the edges sorted by target, built on first use
+ * after a change and kept until the next one. Reading the sorted order may therefore
+ * write to the index, so concurrent readers must be synchronized externally.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class EdgeIndex<V extends Comparable<V>> {
+    /**
+     * Marks an empty slot in {@code keys}.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The number of slots allocated by the first insertion.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * The target id in each slot, or {@code EMPTY}.
+     */
+    private int[] keys;
+
+    /**
+     * The edge in each slot, parallel to {@code keys}.
+     */
+    private Destination<V>[] edges;
+
+    /**
+     * The number of edges in the table.
+     */
+    private int size = 0;
+
+    /**
+     * The edges sorted by ascending target, or null if the table changed since they
+     * were last sorted.
+     */
+    private Destination<V>[] sorted;
+
+    /**
+     * The number of insertions and removals, used to fail fast in sorted iterators.
+     */
+    private int modCount = 0;
+
+    /**
+     * Returns the number of edges in the table.
+     *
+     * @return the number of edges
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the edge leading to the specified target.
+     *
+     * @param target the id of the target vertex
+     * @return the edge, or null if there is none
+     */
+    public Destination<V> get(int target) {
+        if (size == 0 || target < 0) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(target) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == target) {
+                return edges[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if there is an edge leading to the specified target.
+     *
+     * @param target the id of the target vertex
+     * @return true if the table holds an edge to the target
+     */
+    public boolean containsKey(int target) {
+        return get(target) != null;
+    }
+
+    /**
+     * Adds an edge leading to the specified target, which must not already have one.
+     *
+     * @param target the id of the target vertex
+     * @param edge the edge
+     */
+    @SuppressWarnings("unchecked")
+    public void put(int target, Destination<V> edge) {
+        if (keys == null) {
+            keys = new int[INITIAL_CAPACITY];
+            Arrays.fill(keys, EMPTY);
+            edges = (Destination<V>[]) new Destination[INITIAL_CAPACITY];
+        } else if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2); // Keep the load at most one half
+        }
+        int mask = keys.length - 1;
+        int slot = hash(target) & mask;
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = target;
+        edges[slot] = edge;
+        size++;
+        sorted = null;
+        modCount++;
+    }
+
+    /**
+     * Removes the edge leading to the specified target.
+     *
+     * @param target the id of the target vertex
+     * @return the removed edge, or null if there was none
+     */
+    public Destination<V> remove(int target) {
+        if (size == 0 || target < 0) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        int slot = hash(target) & mask;
+        while (keys[slot] != target) {
+            if (keys[slot] == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        Destination<V> removed = edges[slot];
+
+        // Shift back every later entry of the run that may not stay past the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                edges[hole] = edges[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        edges[hole] = null;
+        size--;
+        sorted = null;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Passes the target of each edge to the given action, in table order, without
+     * allocating. The table must not be changed by the action.
+     *
+     * @param action the action to perform on each target vertex
+     */
+    public void forEachTarget(Consumer<? super V> action) {
+        if (size == 0) {
+            return;
+        }
+        for (Destination<V> edge : edges) {
+            if (edge != null) {
+                action.accept(edge.node);
+            }
+        }
+    }
+
+    /**
+     * Passes each edge to the given action, by ascending target. The table must not be
+     * changed by the action.
+     *
+     * @param action the action to perform on each edge
+     */
+    public void forEachSorted(Consumer<? super Destination<V>> action) {
+        for (Destination<V> edge : sorted()) {
+            action.accept(edge);
+        }
+    }
+
+    /**
+     * Returns an iterator over the edges by target, which fails fast if the table is
+     * changed during iteration.
+     *
+     * @param descending true to visit the largest target first
+     * @return an iterator over the edges
+     */
+    public Iterator<Destination<V>> sortedIterator(boolean descending) {
+        Destination<V>[] order = sorted();
+        int expectedModCount = modCount;
+        return new Iterator<Destination<V>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < order.length;
+            }
+
+            @Override
+            public Destination<V> next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= order.length) {
+                    throw new NoSuchElementException();
+                }
+                int i = next++;
+                return order[descending ? order.length - 1 - i : i];
+            }
+        };
+    }
+
+    /**
+     * Returns the edges sorted by ascending target, sorting them again only if the
+     * table changed since the last call.
+     *
+     * @return the sorted edges, which must not be modified
+     */
+    @SuppressWarnings("unchecked")
+    private Destination<V>[] sorted() {
+        if (sorted == null) {
+            Destination<V>[] order = (Destination<V>[]) new Destination[size];
+            if (size > 0) {
+                int n = 0;
+                for (Destination<V> edge : edges) {
+                    if (edge != null) {
+                        order[n++] = edge;
+                    }
+                }
+                Arrays.sort(order, (a, b) -> a.node.compareTo(b.node));
+            }
+            sorted = order;
+        }
+        return sorted;
+    }
+
+    /**
+     * Moves every entry into a table with the given number of slots.
+     *
+     * @param capacity the new number of slots, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Destination<V>[] oldEdges = edges;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        edges = (Destination<V>[]) new Destination[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                edges[slot] = oldEdges[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads a dense id over the table, so runs of consecutive ids do not cluster.
+     *
+     * @param id the id to hash
+     * @return the mixed hash
+     */
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Randomized test: applies random insertions and removals to a table and to a
+     * {@code HashMap}, checking after each step that every lookup agrees.
+     *
+     * @param args 0 - optional number of operations
+     */
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        EdgeIndex<Integer> index = new EdgeIndex<>();
+        HashMap<Integer, Destination<Integer>> expected = new HashMap<>();
+        long seed = 909;
+        for (int op = 0; op < operations; op++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int target = (int) ((seed >>> 33) % 512); // Few keys, so runs collide and wrap
+            if ((seed >>> 62) < 2 && !expected.containsKey(target)) {
+                Destination<Integer> edge = new Destination<>(target, op);
+                index.put(target, edge);
+                expected.put(target, edge);
+            } else if (index.remove(target) != expected.remove(target)) {
+                System.out.println("Operation " + op + ": removed the wrong edge for " + target);
+                return;
+            }
+            if (op % 997 == 0) {
+                for (int t = -1; t < 512; t++) {
+                    if (index.get(t) != expected.get(t) || index.size() != expected.size()) {
+                        System.out.println("Operation " + op + ": lookup of " + t + " disagrees");
+                        return;
+                    }
+                }
+            }
+        }
+        int[] targets = new int[1];
+        index.forEachTarget(t -> targets[0]++);
+        if (targets[0] == expected.size()) {
+            System.out.println("Yay 1: " + operations + " operations agree with HashMap");
+        }
+
+        // Sorted order, rebuilt after a change
+        int previous = -1;
+        for (Iterator<Destination<Integer>> it = index.sortedIterator(false); it.hasNext(); ) {
+            int target = it.next().node;
+            if (target <= previous) {
+                System.out.println("Trial 2: targets out of order at " + target);
+                return;
+            }
+            previous = target;
+        }
+        index.put(512, new Destination<>(512, 0));
+        Iterator<Destination<Integer>> descending = index.sortedIterator(true);
+        if (descending.next().node == 512) {
+            index.remove(512);
+            try {
+                descending.next();
+                System.out.println("Trial 2: no ConcurrentModificationException");
+                return;
+            } catch (ConcurrentModificationException e) {
+                System.out.println("Yay 2: sorted iteration is ordered and fails fast");
+            }
+        }
+    }
+}
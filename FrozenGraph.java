@@ -0,0 +1,1107 @@
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.DirectedGraph;
+
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * An immutable snapshot of a {@link ThreeTenGraph} in compressed sparse row (CSR) form,
+ * created with {@link ThreeTenGraph#freeze()}.
+ *
+ * <p>Every vertex is interned to a dense int id, in the order the vertices were added.
+ * The outgoing edges of vertex {@code id} occupy positions
+ * {@code [outStart(id), outEnd(id))} of flat {@code int[]} target and priority arrays,
+ * sorted by ascending target vertex, and the incoming edges occupy
+ * {@code [inStart(id), inEnd(id))} of flat source and priority arrays, in the order the
+ * edges were added. Traversals that work on ids therefore read contiguous int arrays
+ * instead of chasing map entries and heap nodes.
+ *
+ * <p>The snapshot implements the same {@code DirectedGraph} query surface as
+ * {@code ThreeTenGraph}, so the JUNG views and {@link TopologicalSort} can run on it.
+ * Mutators throw {@code UnsupportedOperationException}.
+ *
+ * <p>Edge objects are shared with the graph that was frozen, and that graph may later
+ * rewrite their {@code node} and {@code priority} fields: re-adding a removed edge
+ * points it at a new target, and {@link ThreeTenGraph#updatePriority} changes its
+ * priority. Endpoints and priorities are copied into the snapshot at freeze time, so
+ * read them through the snapshot ({@link #getDest}, {@link #getEndpoints},
+ * {@link #target}, {@link #priority}) and never from the edge's own fields. This
+ * matters most for {@link ConcurrentThreeTenGraph} readers, which have no
+ * happens-before edge with a writer's later changes to those fields.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class FrozenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>, DirectedGraph<V, Destination<V>> {
+    /**
+     * The vertices by id.
+     */
+    private final V[] vertices;
+
+    /**
+     * The id of every vertex.
+     */
+    private final VertexIndex<V> ids;
+
+    /**
+     * Where each vertex's outgoing edges start; entry {@code n} is the edge count.
+     */
+    private final int[] outOffsets;
+
+    /**
+     * The target id of each outgoing edge.
+     */
+    private final int[] targets;
+
+    /**
+     * The source id of each outgoing edge, parallel to {@code targets}.
+     */
+    private final int[] sources;
+
+    /**
+     * The priority of each outgoing edge, parallel to {@code targets}.
+     */
+    private final int[] priorities;
+
+    /**
+     * The edge object at each outgoing position, parallel to {@code targets}.
+     */
+    private final Destination<V>[] edges;
+
+    /**
+     * Where each vertex's incoming edges start; entry {@code n} is the edge count.
+     */
+    private final int[] inOffsets;
+
+    /**
+     * The source id of each incoming edge.
+     */
+    private final int[] inSources;
+
+    /**
+     * The priority of each incoming edge, parallel to {@code inSources}.
+     */
+    private final int[] inPriorities;
+
+    /**
+     * The edge object at each incoming position, parallel to {@code inSources}.
+     */
+    private final Destination<V>[] inEdges;
+
+    /**
+     * The outgoing position of every edge, or null until an edge is first looked up.
+     * Snapshots are shared between reader threads, so the map is published through
+     * this volatile field once fully built; two racing readers may both build it.
+     */
+    private volatile HashMap<Destination<V>, Integer> positions;
+
+    /**
+     * Builds a snapshot of the given graph in O(V + E).
+     *
+     * @param graph the graph to freeze
+     */
+    @SuppressWarnings("unchecked")
+    FrozenGraph(ThreeTenGraph<V> graph) {
+        int n = graph.getVertexCount();
+        int m = graph.getEdgeCount();
+        this.vertices = (V[]) new Comparable[n];
+        this.ids = new VertexIndex<>(n);
+        for (V vertex : graph.getVertices()) {
+            vertices[ids.add(vertex)] = vertex;
+        }
+
+        this.outOffsets = new int[n + 1];
+        this.targets = new int[m];
+        this.sources = new int[m];
+        this.priorities = new int[m];
+        this.edges = (Destination<V>[]) new Destination[m];
+        int pos = 0;
+        for (int v = 0; v < n; v++) {
+            outOffsets[v] = pos;
+            for (Destination<V> edge : graph.getOutEdges(vertices[v])) { // By ascending target
+                targets[pos] = ids.idOf(edge.node);
+                sources[pos] = v;
+                priorities[pos] = edge.priority;
+                edges[pos++] = edge;
+            }
+        }
+        outOffsets[n] = pos;
+
+        this.inOffsets = new int[n + 1];
+        this.inSources = new int[m];
+        this.inPriorities = new int[m];
+        this.inEdges = (Destination<V>[]) new Destination[m];
+        pos = 0;
+        for (int v = 0; v < n; v++) {
+            inOffsets[v] = pos;
+            for (Destination<V> edge : graph.getInEdges(vertices[v])) {
+                inSources[pos] = ids.idOf(graph.getSource(edge));
+                inPriorities[pos] = edge.priority;
+                inEdges[pos++] = edge;
+            }
+        }
+        inOffsets[n] = pos;
+    }
+
+    /**
+     * Returns the outgoing position of every edge, building the map on first use so
+     * freezing does not box a position per edge for snapshots that never look one up.
+     *
+     * @return the position of each edge in {@code edges}
+     */
+    private HashMap<Destination<V>, Integer> positions() {
+        HashMap<Destination<V>, Integer> result = positions;
+        if (result == null) {
+            result = new HashMap<>(edges.length * 2);
+            for (int pos = 0; pos < edges.length; pos++) {
+                result.put(edges[pos], pos);
+            }
+            positions = result;
+        }
+        return result;
+    }
+
+    //********************************************************************************
+    //   id-level access for algorithms
+    //********************************************************************************
+
+    /**
+     * Returns the id of the specified vertex.
+     *
+     * @param vertex the vertex to look up
+     * @return the id of the vertex, or -1 if it is not in this graph
+     */
+    public int idOf(V vertex) {
+        return ids.idOf(vertex);
+    }
+
+    /**
+     * Returns the vertex with the specified id.
+     *
+     * @param id an id in {@code [0, getVertexCount())}
+     * @return the vertex with that id
+     */
+    public V vertexAt(int id) {
+        return vertices[id];
+    }
+
+    /**
+     * Returns the first outgoing position of the specified vertex.
+     *
+     * @param id the id of the vertex
+     * @return the position of its first outgoing edge
+     */
+    public int outStart(int id) {
+        return outOffsets[id];
+    }
+
+    /**
+     * Returns the position just past the last outgoing edge of the specified vertex.
+     *
+     * @param id the id of the vertex
+     * @return the end of its outgoing edges
+     */
+    public int outEnd(int id) {
+        return outOffsets[id + 1];
+    }
+
+    /**
+     * Returns the target id of the outgoing edge at the specified position.
+     *
+     * @param pos an outgoing position
+     * @return the id of the edge's target
+     */
+    public int target(int pos) {
+        return targets[pos];
+    }
+
+    /**
+     * Returns the priority of the outgoing edge at the specified position.
+     *
+     * @param pos an outgoing position
+     * @return the priority of the edge
+     */
+    public int priority(int pos) {
+        return priorities[pos];
+    }
+
+    /**
+     * Returns the first incoming position of the specified vertex.
+     *
+     * @param id the id of the vertex
+     * @return the position of its first incoming edge
+     */
+    public int inStart(int id) {
+        return inOffsets[id];
+    }
+
+    /**
+     * Returns the position just past the last incoming edge of the specified vertex.
+     *
+     * @param id the id of the vertex
+     * @return the end of its incoming edges
+     */
+    public int inEnd(int id) {
+        return inOffsets[id + 1];
+    }
+
+    /**
+     * Returns the source id of the incoming edge at the specified position.
+     *
+     * @param pos an incoming position
+     * @return the id of the edge's source
+     */
+    public int source(int pos) {
+        return inSources[pos];
+    }
+
+    /**
+     * Returns the priority of the incoming edge at the specified position.
+     *
+     * @param pos an incoming position
+     * @return the priority of the edge
+     */
+    public int inPriority(int pos) {
+        return inPriorities[pos];
+    }
+
+    /**
+     * Returns the outgoing position of the edge from one vertex id to another.
+     *
+     * @param from the id of the source vertex
+     * @param to the id of the target vertex
+     * @return the position of the edge, or -1 if there is none
+     */
+    public int edgeBetween(int from, int to) {
+        for (int pos = outOffsets[from]; pos < outOffsets[from + 1]; pos++) {
+            if (targets[pos] == to) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    //********************************************************************************
+    //   Graph queries
+    //********************************************************************************
+
+    /**
+     * Returns a view of all vertices in this graph, in the order they were added.
+     *
+     * @return a Collection view of all vertices in this graph
+     */
+    @Override
+    public Collection<V> getVertices() {
+        return new VertexRow(null, 0, vertices.length, false);
+    }
+
+    /**
+     * Returns a view of all edges in this graph.
+     *
+     * @return a Collection view of all edges in this graph
+     */
+    @Override
+    public Collection<Destination<V>> getEdges() {
+        return new EdgeRow(edges, 0, edges.length);
+    }
+
+    /**
+     * Returns the number of vertices in this graph.
+     *
+     * @return the number of vertices in this graph
+     */
+    @Override
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     *
+     * @return the number of edges in this graph
+     */
+    @Override
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * Returns true if this graph's vertex collection contains the specified vertex.
+     *
+     * @param vertex the vertex whose presence is being queried
+     * @return true if this graph contains the specified vertex
+     */
+    @Override
+    public boolean containsVertex(V vertex) {
+        return idOf(vertex) >= 0;
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains the specified edge.
+     *
+     * @param edge the edge whose presence is being queried
+     * @return true if this graph contains the specified edge
+     */
+    @Override
+    public boolean containsEdge(Destination<V> edge) {
+        return edge != null && positions().containsKey(edge);
+    }
+
+    /**
+     * Returns a view of the successors of the specified vertex, in ascending order.
+     *
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of the specified vertex
+     */
+    @Override
+    public Collection<V> getSuccessors(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new VertexRow(targets, outOffsets[id], outOffsets[id + 1], false);
+    }
+
+    /**
+     * Returns a view of the successors of the specified vertex in descending order.
+     *
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of the specified vertex, largest first
+     */
+    public Collection<V> getSuccessorsDescending(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new VertexRow(targets, outOffsets[id], outOffsets[id + 1], true);
+    }
+
+    /**
+     * Returns a view of the predecessors of the specified vertex, in the order their
+     * edges were added.
+     *
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a Collection view of the predecessors of the specified vertex
+     */
+    @Override
+    public Collection<V> getPredecessors(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new VertexRow(inSources, inOffsets[id], inOffsets[id + 1], false);
+    }
+
+    /**
+     * Returns a view of the outgoing edges of the specified vertex, by ascending target.
+     *
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a Collection view of the outgoing edges of the vertex
+     */
+    @Override
+    public Collection<Destination<V>> getOutEdges(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new EdgeRow(edges, outOffsets[id], outOffsets[id + 1]);
+    }
+
+    /**
+     * Returns a view of the incoming edges of the specified vertex.
+     *
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a Collection view of the incoming edges of the vertex
+     */
+    @Override
+    public Collection<Destination<V>> getInEdges(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        return new EdgeRow(inEdges, inOffsets[id], inOffsets[id + 1]);
+    }
+
+    /**
+     * Returns the edge from v1 to v2, if any.
+     *
+     * @param v1 the source vertex
+     * @param v2 the destination vertex
+     * @return the edge connecting v1 to v2, or null if no such edge exists
+     */
+    @Override
+    public Destination<V> findEdge(V v1, V v2) {
+        int from = idOf(v1);
+        int to = idOf(v2);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        int pos = edgeBetween(from, to);
+        return pos < 0 ? null : edges[pos];
+    }
+
+    /**
+     * Returns the edges from v1 to v2.
+     *
+     * @param v1 the first vertex
+     * @param v2 the second vertex
+     * @return a collection holding the edge from v1 to v2, or null if there is none
+     */
+    @Override
+    public Collection<Destination<V>> findEdgeSet(V v1, V v2) {
+        Destination<V> edge = findEdge(v1, v2);
+        return edge == null ? null : Collections.singletonList(edge);
+    }
+
+    /**
+     * Returns the endpoints of the specified edge.
+     *
+     * @param edge the edge whose endpoints are to be returned
+     * @return the endpoints of the edge, or null if the edge is not present
+     */
+    @Override
+    public Pair<V> getEndpoints(Destination<V> edge) {
+        Integer pos = edge == null ? null : positions().get(edge);
+        if (pos == null) {
+            return null;
+        }
+        return new Pair<>(vertices[sources[pos]], vertices[targets[pos]]);
+    }
+
+    /**
+     * Returns the source of the specified edge.
+     *
+     * @param directedEdge the directed edge
+     * @return the source vertex of the edge, or null if the edge is not present
+     */
+    @Override
+    public V getSource(Destination<V> directedEdge) {
+        Integer pos = directedEdge == null ? null : positions().get(directedEdge);
+        return pos == null ? null : vertices[sources[pos]];
+    }
+
+    /**
+     * Returns the destination of the specified edge.
+     *
+     * @param directedEdge the directed edge
+     * @return the destination vertex of the edge, or null if the edge is not present
+     */
+    @Override
+    public V getDest(Destination<V> directedEdge) {
+        Integer pos = directedEdge == null ? null : positions().get(directedEdge);
+        return pos == null ? null : vertices[targets[pos]];
+    }
+
+    /**
+     * Checks if the specified vertex is the source of the specified edge.
+     *
+     * @param vertex the vertex to be checked
+     * @param edge   the edge to be checked
+     * @return true if the vertex is the source of the edge, false otherwise
+     */
+    @Override
+    public boolean isSource(V vertex, Destination<V> edge) {
+        V source = getSource(edge);
+        return source != null && source.equals(vertex);
+    }
+
+    /**
+     * Checks if the specified vertex is the destination of the specified edge.
+     *
+     * @param vertex the vertex to be checked
+     * @param edge   the edge to be checked
+     * @return true if the vertex is the destination of the edge, false otherwise
+     */
+    @Override
+    public boolean isDest(V vertex, Destination<V> edge) {
+        V dest = getDest(edge);
+        return dest != null && dest.equals(vertex);
+    }
+
+    /**
+     * Checks if the specified vertex and edge are incident to each other.
+     *
+     * @param vertex the vertex to check
+     * @param edge the edge to check
+     * @return true if the vertex is an endpoint of the edge
+     */
+    @Override
+    public boolean isIncident(V vertex, Destination<V> edge) {
+        return isSource(vertex, edge) || isDest(vertex, edge);
+    }
+
+    /**
+     * Determines if the first vertex has the second vertex as a predecessor, matching
+     * {@link ThreeTenGraph#isPredecessor(Comparable, Comparable)}.
+     *
+     * @param v1 the first vertex
+     * @param v2 the second vertex
+     * @return true if there is an edge from v2 to v1
+     */
+    @Override
+    public boolean isPredecessor(V v1, V v2) {
+        return findEdge(v2, v1) != null;
+    }
+
+    /**
+     * Determines if the first vertex has the second vertex as a successor, matching
+     * {@link ThreeTenGraph#isSuccessor(Comparable, Comparable)}.
+     *
+     * @param v1 the first vertex
+     * @param v2 the second vertex
+     * @return true if there is an edge from v1 to v2
+     */
+    @Override
+    public boolean isSuccessor(V v1, V v2) {
+        return findEdge(v1, v2) != null;
+    }
+
+    /**
+     * Checks if there is an edge from the first vertex to the second, matching
+     * {@link ThreeTenGraph#isNeighbor(Comparable, Comparable)}.
+     *
+     * @param v1 the first vertex
+     * @param v2 the second vertex
+     * @return true if there is an edge from v1 to v2
+     */
+    @Override
+    public boolean isNeighbor(V v1, V v2) {
+        return findEdge(v1, v2) != null;
+    }
+
+    /**
+     * Returns the number of incoming edges of the specified vertex.
+     *
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the indegree of the vertex
+     */
+    @Override
+    public int inDegree(V vertex) {
+        int id = idOf(vertex);
+        return id < 0 ? 0 : inOffsets[id + 1] - inOffsets[id];
+    }
+
+    /**
+     * Returns the number of outgoing edges of the specified vertex.
+     *
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the outdegree of the vertex
+     */
+    @Override
+    public int outDegree(V vertex) {
+        int id = idOf(vertex);
+        return id < 0 ? 0 : outOffsets[id + 1] - outOffsets[id];
+    }
+
+    /**
+     * Returns the sum of the indegree and outdegree of the specified vertex.
+     *
+     * @param vertex the vertex whose degree is to be calculated
+     * @return the degree of the vertex
+     */
+    @Override
+    public int degree(V vertex) {
+        return inDegree(vertex) + outDegree(vertex);
+    }
+
+    /**
+     * Returns the number of predecessors of the specified vertex.
+     *
+     * @param vertex the vertex whose predecessor count is to be returned
+     * @return the number of predecessors of the vertex
+     */
+    @Override
+    public int getPredecessorCount(V vertex) {
+        return inDegree(vertex);
+    }
+
+    /**
+     * Returns the number of successors of the specified vertex.
+     *
+     * @param vertex the vertex whose successor count is to be returned
+     * @return the number of successors of the vertex
+     */
+    @Override
+    public int getSuccessorCount(V vertex) {
+        return outDegree(vertex);
+    }
+
+    /**
+     * Returns the number of vertices adjacent to the specified vertex.
+     *
+     * @param vertex the vertex whose neighbor count is to be returned
+     * @return the number of neighboring vertices
+     */
+    @Override
+    public int getNeighborCount(V vertex) {
+        return getNeighbors(vertex).size();
+    }
+
+    /**
+     * Returns the predecessors followed by the successors of the specified vertex.
+     *
+     * @param vertex the vertex whose neighbors are to be returned
+     * @return a collection of vertices connected to the vertex
+     */
+    @Override
+    public Collection<V> getNeighbors(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        V[] neighbors = (V[]) new Comparable[degree(vertex)];
+        int i = 0;
+        for (int pos = inOffsets[id]; pos < inOffsets[id + 1]; pos++) {
+            neighbors[i++] = vertices[inSources[pos]];
+        }
+        for (int pos = outOffsets[id]; pos < outOffsets[id + 1]; pos++) {
+            neighbors[i++] = vertices[targets[pos]];
+        }
+        return Collections.unmodifiableList(Arrays.asList(neighbors));
+    }
+
+    /**
+     * Returns the incoming followed by the outgoing edges of the specified vertex.
+     *
+     * @param vertex the vertex whose incident edges are to be returned
+     * @return a collection of edges connected to the vertex
+     */
+    @Override
+    public Collection<Destination<V>> getIncidentEdges(V vertex) {
+        int id = idOf(vertex);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        Destination<V>[] incident = (Destination<V>[]) new Destination[degree(vertex)];
+        int i = 0;
+        for (int pos = inOffsets[id]; pos < inOffsets[id + 1]; pos++) {
+            incident[i++] = inEdges[pos];
+        }
+        for (int pos = outOffsets[id]; pos < outOffsets[id + 1]; pos++) {
+            incident[i++] = edges[pos];
+        }
+        return Collections.unmodifiableList(Arrays.asList(incident));
+    }
+
+    /**
+     * Returns the two endpoints of the specified edge.
+     *
+     * @param edge the edge whose incident vertices are to be returned
+     * @return the source and destination of the edge, or null if the edge is not present
+     */
+    @Override
+    public Collection<V> getIncidentVertices(Destination<V> edge) {
+        Pair<V> p = getEndpoints(edge);
+        return p == null ? null : Arrays.asList(p.getFirst(), p.getSecond());
+    }
+
+    /**
+     * Returns the number of vertices incident to the specified edge.
+     *
+     * @param edge the edge whose incident vertex count is to be returned
+     * @return the number of vertices incident to the edge
+     */
+    @Override
+    public int getIncidentCount(Destination<V> edge) {
+        return 2;
+    }
+
+    /**
+     * Returns the vertex opposite to the specified vertex on the specified edge.
+     *
+     * @param vertex the vertex whose opposite is to be found
+     * @param edge the edge connecting the vertices
+     * @return the other endpoint of the edge
+     */
+    @Override
+    public V getOpposite(V vertex, Destination<V> edge) {
+        Pair<V> p = getEndpoints(edge);
+        return p.getFirst().equals(vertex) ? p.getSecond() : p.getFirst();
+    }
+
+    /**
+     * Retrieves edges in the graph that match the specified edge type.
+     *
+     * @param edgeType the type of edges to retrieve
+     * @return a collection of edges of the specified type, or null if unsupported
+     */
+    @Override
+    public Collection<Destination<V>> getEdges(EdgeType edgeType) {
+        return edgeType == EdgeType.DIRECTED ? getEdges() : null;
+    }
+
+    /**
+     * Retrieves the number of edges of the specified type in the graph.
+     *
+     * @param edgeType the type of edges to count
+     * @return the number of edges of the specified type
+     */
+    @Override
+    public int getEdgeCount(EdgeType edgeType) {
+        return edgeType == EdgeType.DIRECTED ? getEdgeCount() : 0;
+    }
+
+    /**
+     * Returns the edge type of the specified edge in this graph.
+     *
+     * @param edge the edge whose type is to be returned
+     * @return {@code EdgeType.DIRECTED}
+     */
+    @Override
+    public EdgeType getEdgeType(Destination<V> edge) {
+        return EdgeType.DIRECTED;
+    }
+
+    /**
+     * Returns the default edge type for this graph.
+     *
+     * @return {@code EdgeType.DIRECTED}
+     */
+    @Override
+    public EdgeType getDefaultEdgeType() {
+        return EdgeType.DIRECTED;
+    }
+
+    //********************************************************************************
+    //   mutators, unsupported on a snapshot
+    //********************************************************************************
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param vertex ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean addVertex(V vertex) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param e ignored
+     * @param v1 ignored
+     * @param v2 ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean addEdge(Destination<V> e, V v1, V v2) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param e ignored
+     * @param v1 ignored
+     * @param v2 ignored
+     * @param edgeType ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean addEdge(Destination<V> e, V v1, V v2, EdgeType edgeType) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param edge ignored
+     * @param vertices ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean addEdge(Destination<V> edge, Collection<? extends V> vertices) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param edge ignored
+     * @param vertices ignored
+     * @param edgeType ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean addEdge(Destination<V> edge, Collection<? extends V> vertices, EdgeType edgeType) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param vertex ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeVertex(V vertex) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Always throws, since a frozen graph cannot change.
+     *
+     * @param edge ignored
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeEdge(Destination<V> edge) {
+        throw new UnsupportedOperationException("FrozenGraph is immutable");
+    }
+
+    /**
+     * Returns a string representation of the snapshot's edges.
+     *
+     * @return a string representation of the graph
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < vertices.length; v++) {
+            sb.append(vertices[v]).append(" -> ");
+            for (int pos = outOffsets[v]; pos < outOffsets[v + 1]; pos++) {
+                sb.append(edges[pos]).append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A read-only view of a range of vertex ids as vertices.
+     */
+    private final class VertexRow extends AbstractList<V> {
+        /**
+         * The ids in the range, or null when the range is the ids themselves.
+         */
+        private final int[] row;
+
+        /**
+         * The first position of the range.
+         */
+        private final int from;
+
+        /**
+         * The position just past the range.
+         */
+        private final int to;
+
+        /**
+         * Whether the range is read from its end.
+         */
+        private final boolean descending;
+
+        /**
+         * Constructs a view of {@code row[from, to)}.
+         *
+         * @param row the ids, or null for the identity mapping
+         * @param from the first position
+         * @param to the position just past the last
+         * @param descending true to read the range backwards
+         */
+        VertexRow(int[] row, int from, int to, boolean descending) {
+            this.row = row;
+            this.from = from;
+            this.to = to;
+            this.descending = descending;
+        }
+
+        @Override
+        public V get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            int pos = descending ? to - 1 - index : from + index;
+            return vertices[row == null ? pos : row[pos]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int id = ids.idOf(o);
+            if (id < 0) {
+                return false;
+            }
+            if (row == null) {
+                return id >= from && id < to;
+            }
+            for (int pos = from; pos < to; pos++) {
+                if (row[pos] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A read-only view of a range of an edge array.
+     */
+    private final class EdgeRow extends AbstractList<Destination<V>> {
+        /**
+         * The edges.
+         */
+        private final Destination<V>[] row;
+
+        /**
+         * The first position of the range.
+         */
+        private final int from;
+
+        /**
+         * The position just past the range.
+         */
+        private final int to;
+
+        /**
+         * Constructs a view of {@code row[from, to)}.
+         *
+         * @param row the edges
+         * @param from the first position
+         * @param to the position just past the last
+         */
+        EdgeRow(Destination<V>[] row, int from, int to) {
+            this.row = row;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Destination<V> get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return row[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer pos = o == null ? null : positions().get(o);
+            if (pos == null) {
+                return false;
+            }
+            if (row == edges) {
+                return pos >= from && pos < to;
+            }
+            for (int i = from; i < to; i++) {
+                if (row[i] == o) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Tests snapshots of random graphs, with vertices and edges removed, against the
+     * graph they were frozen from, and checks that a snapshot is reused until the graph
+     * changes and is unaffected by later changes.
+     *
+     * @param args 0 - optional number of random graphs
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        long seed = 1203;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = 1 + (int) (seed >>> 59);
+            ThreeTenGraph<Integer> graph = new ThreeTenGraph<>();
+            for (int v = 0; v < n; v++) {
+                graph.addVertex(n - 1 - v); // Added in reverse of natural order
+            }
+            for (int from = 0; from < n; from++) {
+                for (int to = 0; to < n; to++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    if ((seed >>> 62) == 0) {
+                        graph.addEdge(new Destination<>(to, (int) (seed >>> 40) % 50), from, to);
+                    }
+                }
+            }
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            graph.removeVertex((int) ((seed >>> 33) % n));
+            for (Destination<Integer> edge : new ArrayList<>(graph.getEdges())) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                if ((seed >>> 61) == 0) {
+                    graph.removeEdge(edge);
+                }
+            }
+
+            FrozenGraph<Integer> frozen = graph.freeze();
+            boolean same = frozen.getVertexCount() == graph.getVertexCount()
+                    && frozen.getEdgeCount() == graph.getEdgeCount() && frozen.idOf(n) == -1;
+            for (int id = 0; same && id < frozen.getVertexCount(); id++) {
+                Integer v = frozen.vertexAt(id);
+                same = graph.containsVertex(v) && frozen.idOf(v) == id
+                        && frozen.outEnd(id) - frozen.outStart(id) == graph.outDegree(v)
+                        && frozen.inEnd(id) - frozen.inStart(id) == graph.inDegree(v);
+                for (int pos = frozen.outStart(id); same && pos < frozen.outEnd(id); pos++) {
+                    Integer w = frozen.vertexAt(frozen.target(pos));
+                    Destination<Integer> edge = graph.findEdge(v, w);
+                    same = edge != null && edge.getPriority() == frozen.priority(pos)
+                            && frozen.edgeBetween(id, frozen.target(pos)) == pos
+                            && (pos == frozen.outStart(id) || frozen.vertexAt(frozen.target(pos - 1)).compareTo(w) < 0);
+                }
+                for (int pos = frozen.inStart(id); same && pos < frozen.inEnd(id); pos++) {
+                    Destination<Integer> edge = graph.findEdge(frozen.vertexAt(frozen.source(pos)), v);
+                    same = edge != null && edge.getPriority() == frozen.inPriority(pos);
+                }
+            }
+            if (!same) {
+                System.out.println("Trial " + trial + ": snapshot does not match the graph");
+                return;
+            }
+        }
+        System.out.println("Yay 1: " + trials + " snapshots match their graphs");
+
+        ThreeTenGraph<String> graph = new ThreeTenGraph<>();
+        graph.addVertex("A");
+        graph.addVertex("B");
+        Destination<String> edge = new Destination<>("B", 4);
+        graph.addEdge(edge, "A", "B");
+        FrozenGraph<String> frozen = graph.freeze();
+        if (graph.freeze() == frozen) {
+            System.out.println("Yay 2: snapshot reused while the graph is unchanged");
+        }
+
+        graph.updatePriority(edge, 9);
+        graph.addVertex("C");
+        graph.removeEdge(edge);
+        graph.addEdge(edge, "A", "C");
+        int pos = frozen.edgeBetween(frozen.idOf("A"), frozen.idOf("B"));
+        if (graph.freeze() != frozen && pos >= 0 && frozen.priority(pos) == 4 && frozen.getDest(edge).equals("B")
+                && frozen.getVertexCount() == 2 && !frozen.containsVertex("C")) {
+            System.out.println("Yay 3: old snapshot unaffected by later changes");
+        }
+        try {
+            frozen.addVertex("D");
+        } catch (UnsupportedOperationException e) {
+            System.out.println("Yay 4: snapshot cannot be modified");
+        }
+    }
+}
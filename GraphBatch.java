@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * A set of changes to a {@link ThreeTenGraph} that are staged first and applied together,
+ * for loading or refreshing a large graph. Create one with {@link ThreeTenGraph#batch()}.
+ *
+ * <p>{@link #apply()} makes one pass per kind of change, in this order:
+ * <ol>
+ * <li>staged edge removals, grouped by source so each heap is filtered once;</li>
+ * <li>staged vertex removals, filtering each surviving predecessor's heap once;</li>
+ * <li>staged vertex additions;</li>
+ * <li>staged edge additions, grouped by source so each heap is built in one bulk
+ *     insertion instead of one sift per edge.</li>
+ * </ol>
+ * Because removals come first, removing and re-adding a vertex in one batch gives it a
+ * fresh start. Additions follow the same rules as {@code addVertex} and {@code addEdge}:
+ * duplicates and edges between missing vertices are skipped. Edges are added grouped by
+ * source, so {@code getPredecessors} lists their sources in that order.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class GraphBatch<V extends Comparable<V>> {
+    /**
+     * The graph the batch is applied to.
+     */
+    private final ThreeTenGraph<V> graph;
+
+    /**
+     * Staged edge removals.
+     */
+    private final LinkedHashSet<Destination<V>> edgeRemovals = new LinkedHashSet<>();
+
+    /**
+     * Staged vertex removals.
+     */
+    private final LinkedHashSet<V> vertexRemovals = new LinkedHashSet<>();
+
+    /**
+     * Staged vertex additions, in the order they were staged.
+     */
+    private final LinkedHashSet<V> vertexAdditions = new LinkedHashSet<>();
+
+    /**
+     * Staged edge additions grouped by source vertex.
+     */
+    private final LinkedHashMap<V, ArrayList<Destination<V>>> edgeAdditions = new LinkedHashMap<>();
+
+    /**
+     * The target vertex of each staged edge addition.
+     */
+    private final LinkedHashMap<Destination<V>, V> edgeTargets = new LinkedHashMap<>();
+
+    /**
+     * Constructs an empty batch for the given graph.
+     *
+     * @param graph the graph the batch is applied to
+     */
+    GraphBatch(ThreeTenGraph<V> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Stages the addition of a vertex.
+     *
+     * @param vertex the vertex to add
+     * @throws IllegalArgumentException if the vertex is null
+     */
+    public void addVertex(V vertex) {
+        if (vertex == null) {
+            throw new IllegalArgumentException("Vertex cannot be null");
+        }
+        vertexAdditions.add(vertex);
+    }
+
+    /**
+     * Stages the addition of an edge from v1 to v2.
+     *
+     * @param e  the edge to add
+     * @param v1 the source vertex
+     * @param v2 the destination vertex
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public void addEdge(Destination<V> e, V v1, V v2) {
+        if (e == null || v1 == null || v2 == null) {
+            throw new IllegalArgumentException("Null values not allowed");
+        }
+        if (edgeTargets.containsKey(e)) {
+            return;
+        }
+        edgeTargets.put(e, v2);
+        edgeAdditions.computeIfAbsent(v1, k -> new ArrayList<>()).add(e);
+    }
+
+    /**
+     * Stages the removal of an edge.
+     *
+     * @param edge the edge to remove
+     * @throws IllegalArgumentException if the edge is null
+     */
+    public void removeEdge(Destination<V> edge) {
+        if (edge == null) {
+            throw new IllegalArgumentException("Edge cannot be null");
+        }
+        edgeRemovals.add(edge);
+    }
+
+    /**
+     * Stages the removal of a vertex and all its incident edges.
+     *
+     * @param vertex the vertex to remove
+     * @throws IllegalArgumentException if the vertex is null
+     */
+    public void removeVertex(V vertex) {
+        if (vertex == null) {
+            throw new IllegalArgumentException("Vertex cannot be null");
+        }
+        vertexRemovals.add(vertex);
+    }
+
+    /**
+     * Returns the number of staged changes.
+     *
+     * @return the number of staged additions and removals
+     */
+    public int size() {
+        return edgeRemovals.size() + vertexRemovals.size() + vertexAdditions.size() + edgeTargets.size();
+    }
+
+    /**
+     * Discards every staged change.
+     */
+    public void clear() {
+        edgeRemovals.clear();
+        vertexRemovals.clear();
+        vertexAdditions.clear();
+        edgeAdditions.clear();
+        edgeTargets.clear();
+    }
+
+    /**
+     * Applies the staged changes to the graph and empties the batch.
+     *
+     * @return the number of changes that took effect
+     */
+    public int apply() {
+        int changes = graph.removeEdges(edgeRemovals);
+        changes += graph.removeVertices(vertexRemovals);
+        for (V vertex : vertexAdditions) {
+            if (graph.addVertex(vertex)) {
+                changes++;
+            }
+        }
+        for (V source : edgeAdditions.keySet()) {
+            ArrayList<Destination<V>> edges = new ArrayList<>();
+            ArrayList<V> previous = new ArrayList<>();
+            for (Destination<V> e : edgeAdditions.get(source)) {
+                if (!graph.containsEdge(e)) {
+                    edges.add(e);
+                    previous.add(e.node);
+                    e.node = edgeTargets.get(e);
+                }
+            }
+            changes += graph.addEdges(source, edges);
+            for (int i = 0; i < edges.size(); i++) {
+                if (!graph.containsEdge(edges.get(i))) {
+                    edges.get(i).node = previous.get(i); // Rejected edges keep their node, as with addEdge
+                }
+            }
+        }
+        clear();
+        return changes;
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * Benchmark driver comparing {@link MinHeap} arities on the same workloads, and
+ * {@link ConcurrentMinHeap} against a single-lock {@code MinHeap} under contention.
+ *
+ * <p>Usage: {@code java HeapBenchmark [elements] [rounds] [threads]}. Every
+ * configuration runs the same pseudo-random sequence of operations, and the best time
+ * over all rounds is reported so JIT warm-up does not skew the comparison.
+ */
+class HeapBenchmark {
+    /**
+     * The arities compared by this benchmark.
+     */
+    private static final int[] ARITIES = {2, 4, 8};
+
+    /**
+     * A heap element with a single int priority, so only heap work is measured.
+     */
+    private static final class Item implements Comparable<Item> {
+        /**
+         * The priority of this item.
+         */
+        final int priority;
+
+        /**
+         * Constructs an item with the given priority.
+         *
+         * @param priority the priority
+         */
+        Item(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return Integer.compare(priority, other.priority);
+        }
+    }
+
+    /**
+     * Main method running every workload for every arity.
+     *
+     * @param args 0 - optional number of elements, 1 - optional number of rounds,
+     *             2 - optional number of threads for the concurrent workload
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Item[] items = new Item[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            items[i] = new Item(random.nextInt());
+        }
+
+        System.out.printf("%-10s %6s %12s%n", "workload", "arity", "best ms");
+        for (int arity : ARITIES) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                best = Math.min(best, fillThenDrain(new MinHeap<>(arity), items));
+            }
+            System.out.printf("%-10s %6d %12.2f%n", "drain", arity, best / 1e6);
+        }
+        for (int arity : ARITIES) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                best = Math.min(best, hold(new MinHeap<>(arity), items));
+            }
+            System.out.printf("%-10s %6d %12.2f%n", "hold", arity, best / 1e6);
+        }
+        for (int arity : ARITIES) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                best = Math.min(best, fillThenRemove(new IndexedMinHeap<>(arity), items));
+            }
+            System.out.printf("%-10s %6d %12.2f%n", "remove", arity, best / 1e6);
+        }
+
+        System.out.printf("%n%-10s %8s %12s%n", "queue", "threads", "best ms");
+        String[] names = {"locked", "strict", "relaxed"};
+        for (int q = 0; q < names.length; q++) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                Queue<Item> queue = q == 0 ? new MinHeap<>()
+                        : q == 1 ? ConcurrentMinHeap.strict() : ConcurrentMinHeap.relaxed();
+                best = Math.min(best, concurrentHold(queue, q == 0, items, threads));
+            }
+            System.out.printf("%-10s %8d %12.2f%n", names[q], threads, best / 1e6);
+        }
+    }
+
+    /**
+     * Offers every item, then polls until the heap is empty.
+     *
+     * @param heap an empty heap
+     * @param items the items to offer
+     * @return the elapsed time in nanoseconds
+     */
+    private static long fillThenDrain(MinHeap<Item> heap, Item[] items) {
+        long start = System.nanoTime();
+        for (Item item : items) {
+            heap.offer(item);
+        }
+        long checksum = 0;
+        while (!heap.isEmpty()) {
+            checksum += heap.poll().priority;
+        }
+        long elapsed = System.nanoTime() - start;
+        consume(checksum);
+        return elapsed;
+    }
+
+    /**
+     * Classic hold model: a heap of a tenth of the items where every poll is followed
+     * by an offer, as in an event-driven scheduler or a wide adjacency list scan.
+     *
+     * @param heap an empty heap
+     * @param items the items to offer
+     * @return the elapsed time in nanoseconds
+     */
+    private static long hold(MinHeap<Item> heap, Item[] items) {
+        int resident = Math.max(1, items.length / 10);
+        for (int i = 0; i < resident; i++) {
+            heap.offer(items[i]);
+        }
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = resident; i < items.length; i++) {
+            checksum += heap.poll().priority;
+            heap.offer(items[i]);
+        }
+        long elapsed = System.nanoTime() - start;
+        consume(checksum);
+        return elapsed;
+    }
+
+    /**
+     * Offers every item, then removes them by identity in insertion order.
+     *
+     * @param heap an empty indexed heap
+     * @param items the items to offer
+     * @return the elapsed time in nanoseconds
+     */
+    private static long fillThenRemove(IndexedMinHeap<Item> heap, Item[] items) {
+        long start = System.nanoTime();
+        for (Item item : items) {
+            heap.offer(item);
+        }
+        for (Item item : items) {
+            heap.remove(item);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Hold model shared by several threads: each thread polls and offers its share of
+     * the items against one queue.
+     *
+     * @param queue an empty queue shared by all threads
+     * @param lockAll true to guard every operation with one lock on the queue
+     * @param items the items to offer
+     * @param threads the number of worker threads
+     * @return the elapsed time in nanoseconds
+     */
+    private static long concurrentHold(Queue<Item> queue, boolean lockAll, Item[] items, int threads) {
+        int resident = Math.max(1, items.length / 10);
+        for (int i = 0; i < resident; i++) {
+            queue.offer(items[i]);
+        }
+        Thread[] workers = new Thread[threads];
+        int share = (items.length - resident) / threads;
+        for (int t = 0; t < threads; t++) {
+            int from = resident + t * share;
+            workers[t] = new Thread(() -> {
+                long checksum = 0;
+                for (int i = from; i < from + share; i++) {
+                    Item item;
+                    if (lockAll) {
+                        synchronized (queue) {
+                            item = queue.poll();
+                            queue.offer(items[i]);
+                        }
+                    } else {
+                        item = queue.poll();
+                        queue.offer(items[i]);
+                    }
+                    checksum += item == null ? 0 : item.priority;
+                }
+                consume(checksum);
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Keeps a result alive so the JIT cannot discard the measured work.
+     *
+     * @param value the value to consume
+     */
+    private static void consume(long value) {
+        if (value == 42) {
+            System.out.print("");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * An IndexedMinHeap is a MinHeap that remembers the index of every element it holds.
+ * This turns {@code contains} into an O(1) lookup and {@code remove(Object)} into an
+ * O(log n) operation, and allows the priority of an element already in the heap to be
+ * changed in place with {@link #decreaseKey(Comparable)} or
+ * {@link #updatePriority(Comparable)}.
+ *
+ * <p>Elements are located with {@code equals}/{@code hashCode}, so the heap cannot hold
+ * two equal elements at the same time.
+ *
+ * @param <E> the type of elements held in this heap, which must be Comparable.
+ */
+public class IndexedMinHeap<E extends Comparable<E>> extends MinHeap<E> {
+    /**
+     * The current index of each element in the heap.
+     */
+    private HashMap<E, Slot> slots = new HashMap<>();
+
+    /**
+     * Mutable holder for an element's index, so moving an element does not box an Integer.
+     */
+    private static final class Slot {
+        /**
+         * The index of the element in the underlying array.
+         */
+        int index;
+    }
+
+    /**
+     * Constructs an empty binary IndexedMinHeap with the default initial capacity.
+     */
+    public IndexedMinHeap() {
+        super();
+    }
+
+    /**
+     * Constructs an empty IndexedMinHeap with the given number of children per node.
+     *
+     * @param arity the number of children per node, such as 2, 4 or 8.
+     * @throws IllegalArgumentException if the arity is less than 2.
+     */
+    public IndexedMinHeap(int arity) {
+        super(arity);
+    }
+
+    /**
+     * Constructs a binary IndexedMinHeap containing the elements of the specified
+     * collection, built bottom-up in O(n).
+     *
+     * @param c the collection whose elements are to be placed into this heap.
+     * @throws IllegalArgumentException if the collection contains null or equal elements.
+     */
+    public IndexedMinHeap(Collection<? extends E> c) {
+        super();
+        addAll(c);
+    }
+
+    /**
+     * Constructs an IndexedMinHeap as a copy of another IndexedMinHeap.
+     *
+     * @param other the IndexedMinHeap to copy.
+     */
+    public IndexedMinHeap(IndexedMinHeap<E> other) {
+        super(other);
+        for (E element : other.slots.keySet()) {
+            Slot slot = new Slot();
+            slot.index = other.slots.get(element).index;
+            slots.put(element, slot);
+        }
+    }
+
+    /**
+     * Inserts the specified element into the heap, maintaining the min-heap property.
+     *
+     * @param element the element to be added to the heap.
+     * @return true if the element was successfully added.
+     * @throws IllegalArgumentException if the element is null or already in the heap.
+     */
+    @Override
+    public boolean offer(E element) {
+        if (element != null && slots.containsKey(element)) {
+            throw new IllegalArgumentException("Element is already in the IndexedMinHeap.");
+        }
+        return super.offer(element);
+    }
+
+    /**
+     * Adds all elements of the specified collection to the heap, rebuilding it
+     * bottom-up when the batch is large.
+     *
+     * @param c the collection containing elements to be added to the heap.
+     * @return true if the heap changed as a result of the call.
+     * @throws IllegalArgumentException if the collection contains null elements,
+     *                                  equal elements, or elements already in the heap.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        HashSet<E> batch = new HashSet<>();
+        for (E element : c) {
+            if (element != null && (slots.containsKey(element) || !batch.add(element))) {
+                throw new IllegalArgumentException("Element is already in the IndexedMinHeap.");
+            }
+        }
+        return super.addAll(c);
+    }
+
+    /**
+     * Restores the heap order after the priority of the specified element has decreased.
+     *
+     * @param element the element whose priority was lowered.
+     * @return true if the heap contained the element; false otherwise.
+     */
+    public boolean decreaseKey(E element) {
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        siftUp(index);
+        return true;
+    }
+
+    /**
+     * Restores the heap order after the priority of the specified element has changed
+     * in either direction.
+     *
+     * @param element the element whose priority was changed.
+     * @return true if the heap contained the element; false otherwise.
+     */
+    public boolean updatePriority(E element) {
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        siftUp(index);
+        siftDown(indexOf(element));
+        return true;
+    }
+
+    /**
+     * Looks up the index of the specified element in constant time.
+     *
+     * @param o the object to search for in the heap.
+     * @return the index of the object, or -1 if the heap does not contain it.
+     */
+    @Override
+    protected int indexOf(Object o) {
+        if (o == null) {
+            return -1;
+        }
+        Slot slot = slots.get(o);
+        return slot == null ? -1 : slot.index;
+    }
+
+    /**
+     * Records the new index of an element.
+     *
+     * @param element the element that was stored.
+     * @param index the index it now occupies.
+     */
+    @Override
+    protected void moved(E element, int index) {
+        Slot slot = slots.get(element);
+        if (slot == null) {
+            slot = new Slot();
+            slots.put(element, slot);
+        }
+        slot.index = index;
+    }
+
+    /**
+     * Forgets the index of an element that left the heap.
+     *
+     * @param element the element that was removed.
+     */
+    @Override
+    protected void removed(E element) {
+        slots.remove(element);
+    }
+}
@@ -0,0 +1,411 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An IntKeyMinHeap is a priority queue of non-negative int ids ordered by primitive int
+ * priorities. Ids and priorities are kept in parallel {@code int} arrays, so sifting never
+ * dereferences or unboxes an object, and an id-to-index table makes {@code contains} O(1)
+ * and {@code remove}/{@link #decreaseKey(int, int)} O(log n).
+ *
+ * <p>Ids are expected to be dense (for example vertex or slot numbers), since the index
+ * table is sized by the largest id seen. Each id may be in the heap at most once.
+ */
+public class IntKeyMinHeap {
+    /**
+     * The default initial capacity of the heap when empty.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 11;
+
+    /**
+     * The ids in heap order.
+     */
+    private int[] ids;
+
+    /**
+     * The priorities in heap order, parallel to {@code ids}.
+     */
+    private int[] priorities;
+
+    /**
+     * The index of each id in the heap arrays, or -1 if the id is not in the heap.
+     */
+    private int[] indexOf;
+
+    /**
+     * The number of elements currently in the heap.
+     */
+    private int size = 0;
+
+    /**
+     * Constructs an empty IntKeyMinHeap with the default initial capacity.
+     */
+    public IntKeyMinHeap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty IntKeyMinHeap sized for ids in {@code [0, capacity)}.
+     *
+     * @param capacity the expected number of elements and id range.
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public IntKeyMinHeap(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative.");
+        }
+        capacity = Math.max(capacity, 1);
+        this.ids = new int[capacity];
+        this.priorities = new int[capacity];
+        this.indexOf = new int[capacity];
+        Arrays.fill(indexOf, -1);
+    }
+
+    /**
+     * Inserts an id with the given priority, maintaining the min-heap property.
+     *
+     * @param id the id to add.
+     * @param priority the priority of the id.
+     * @return true if the id was successfully added.
+     * @throws IllegalArgumentException if the id is negative or already in the heap.
+     */
+    public boolean offer(int id, int priority) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative ids are not allowed in IntKeyMinHeap.");
+        }
+        if (contains(id)) {
+            throw new IllegalArgumentException("Id is already in the IntKeyMinHeap.");
+        }
+        if (size == ids.length) {
+            grow(); // Double the capacity if needed.
+        }
+        ensureIdCapacity(id);
+        set(size, id, priority);
+        size++;
+        siftUp(size - 1); // Restore the min-heap property.
+        return true;
+    }
+
+    /**
+     * Inserts a batch of ids with their priorities. The arrays are grown once, and when
+     * the batch is large relative to the heap the ids are appended and the heap is
+     * rebuilt bottom-up in O(n + k) instead of k offers. Nothing is added if any id is
+     * rejected.
+     *
+     * @param newIds the ids to add.
+     * @param newPriorities the priority of each id, parallel to {@code newIds}.
+     * @return true if the heap changed as a result of the call.
+     * @throws IllegalArgumentException if the arrays differ in length, or an id is
+     *                                  negative, already in the heap, or repeated.
+     */
+    public boolean addAll(int[] newIds, int[] newPriorities) {
+        if (newIds.length != newPriorities.length) {
+            throw new IllegalArgumentException("Ids and priorities must have the same length.");
+        }
+        int maxId = -1;
+        for (int id : newIds) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative ids are not allowed in IntKeyMinHeap.");
+            }
+            if (contains(id)) {
+                throw new IllegalArgumentException("Id is already in the IntKeyMinHeap.");
+            }
+            maxId = Math.max(maxId, id);
+        }
+        if (newIds.length == 0) {
+            return false;
+        }
+        int total = size + newIds.length;
+        if (total > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(total, ids.length * 2));
+            priorities = Arrays.copyOf(priorities, ids.length);
+        }
+        ensureIdCapacity(maxId);
+
+        // Park the batch past the end; a repeated id finds its earlier copy indexed
+        for (int i = 0; i < newIds.length; i++) {
+            if (indexOf[newIds[i]] >= 0) {
+                for (int j = 0; j < i; j++) {
+                    indexOf[newIds[j]] = -1;
+                }
+                throw new IllegalArgumentException("Id is already in the IntKeyMinHeap.");
+            }
+            set(size + i, newIds[i], newPriorities[i]);
+        }
+
+        // k sift-ups cost about k * log(n + k) comparisons, a rebuild costs about n + k.
+        int depth = 32 - Integer.numberOfLeadingZeros(total);
+        if ((long) newIds.length * depth < total) {
+            while (size < total) {
+                siftUp(size++);
+            }
+        } else {
+            size = total;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the id with the smallest priority.
+     *
+     * @return the id at the head of the heap, or -1 if the heap is empty.
+     */
+    public int poll() {
+        if (size == 0) {
+            return -1;
+        }
+        int result = ids[0];
+        removeAt(0);
+        return result;
+    }
+
+    /**
+     * Retrieves, but does not remove, the id with the smallest priority.
+     *
+     * @return the id at the head of the heap, or -1 if the heap is empty.
+     */
+    public int peek() {
+        return size == 0 ? -1 : ids[0];
+    }
+
+    /**
+     * Returns the smallest priority in the heap.
+     *
+     * @return the priority of the head of the heap.
+     * @throws NoSuchElementException if the heap is empty.
+     */
+    public int peekPriority() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return priorities[0];
+    }
+
+    /**
+     * Checks if the heap contains the specified id.
+     *
+     * @param id the id to look up.
+     * @return true if the id is in the heap; false otherwise.
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < indexOf.length && indexOf[id] >= 0;
+    }
+
+    /**
+     * Returns the current priority of the specified id.
+     *
+     * @param id the id to look up.
+     * @return the priority of the id.
+     * @throws NoSuchElementException if the id is not in the heap.
+     */
+    public int priorityOf(int id) {
+        if (!contains(id)) {
+            throw new NoSuchElementException("Id is not in the heap.");
+        }
+        return priorities[indexOf[id]];
+    }
+
+    /**
+     * Removes the specified id from the heap, if it is present.
+     *
+     * @param id the id to remove.
+     * @return true if the heap contained the id; false otherwise.
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        removeAt(indexOf[id]);
+        return true;
+    }
+
+    /**
+     * Lowers the priority of an id already in the heap.
+     *
+     * @param id the id whose priority is lowered.
+     * @param priority the new priority, which must not exceed the current one.
+     * @return true if the heap contained the id; false otherwise.
+     * @throws IllegalArgumentException if the new priority is greater than the current one.
+     */
+    public boolean decreaseKey(int id, int priority) {
+        if (!contains(id)) {
+            return false;
+        }
+        int index = indexOf[id];
+        if (priority > priorities[index]) {
+            throw new IllegalArgumentException("New priority is greater than the current priority.");
+        }
+        priorities[index] = priority;
+        siftUp(index);
+        return true;
+    }
+
+    /**
+     * Changes the priority of an id already in the heap, in either direction.
+     *
+     * @param id the id whose priority is changed.
+     * @param priority the new priority.
+     * @return true if the heap contained the id; false otherwise.
+     */
+    public boolean updatePriority(int id, int priority) {
+        if (!contains(id)) {
+            return false;
+        }
+        int index = indexOf[id];
+        priorities[index] = priority;
+        siftUp(index);
+        siftDown(indexOf[id]);
+        return true;
+    }
+
+    /**
+     * Returns the id stored at the specified index of the heap array.
+     *
+     * @param index an index in {@code [0, size())}.
+     * @return the id at that index.
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the priority stored at the specified index of the heap array.
+     *
+     * @param index an index in {@code [0, size())}.
+     * @return the priority at that index.
+     */
+    public int priorityAt(int index) {
+        return priorities[index];
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the size of the heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the heap is empty.
+     *
+     * @return true if the heap is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all ids from the heap, keeping the allocated capacity.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            indexOf[ids[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Doubles the capacity of the heap arrays.
+     */
+    private void grow() {
+        int newCapacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+    }
+
+    /**
+     * Grows the id-to-index table so it can hold the specified id.
+     *
+     * @param id the id that must fit in the table.
+     */
+    private void ensureIdCapacity(int id) {
+        if (id < indexOf.length) {
+            return;
+        }
+        int oldLength = indexOf.length;
+        indexOf = Arrays.copyOf(indexOf, Math.max(id + 1, oldLength * 2));
+        Arrays.fill(indexOf, oldLength, indexOf.length, -1);
+    }
+
+    /**
+     * Removes the element stored at the specified index, filling the hole with the
+     * last element and restoring the min-heap property around it.
+     *
+     * @param index an index in {@code [0, size())}.
+     * @return the id of the last element if it was sifted up to an index below
+     *         {@code index}, or -1 if it stayed at or below the hole.
+     */
+    int removeAt(int index) {
+        indexOf[ids[index]] = -1;
+        int last = --size;
+        if (index == last) {
+            return -1;
+        }
+        int moved = ids[last];
+        set(index, moved, priorities[last]); // Replace with the last element.
+        siftDown(index); // Restore heap property.
+        siftUp(index);   // Adjust upwards as well.
+        return indexOf[moved] < index ? moved : -1;
+    }
+
+    /**
+     * Stores an id and its priority at the specified index.
+     *
+     * @param index the index to store into.
+     * @param id the id to store.
+     * @param priority the priority of the id.
+     */
+    private void set(int index, int id, int priority) {
+        ids[index] = id;
+        priorities[index] = priority;
+        indexOf[id] = index;
+    }
+
+    /**
+     * Restores the min-heap property by moving the element at the specified index upwards.
+     * The element is held aside and parents are shifted down into the hole.
+     *
+     * @param index the index of the element to sift up.
+     */
+    private void siftUp(int index) {
+        int id = ids[index];
+        int priority = priorities[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (priority >= priorities[parent]) {
+                break;
+            }
+            set(index, ids[parent], priorities[parent]);
+            index = parent;
+        }
+        set(index, id, priority);
+    }
+
+    /**
+     * Restores the min-heap property by moving the element at the specified index downwards.
+     * The element is held aside and smaller children are shifted up into the hole.
+     *
+     * @param index the index of the element to sift down.
+     */
+    private void siftDown(int index) {
+        int id = ids[index];
+        int priority = priorities[index];
+        while (index * 2 + 1 < size) {
+            int smallest = index * 2 + 1;
+            int rightChild = smallest + 1;
+            if (rightChild < size && priorities[rightChild] < priorities[smallest]) {
+                smallest = rightChild;
+            }
+            if (priority <= priorities[smallest]) {
+                break;
+            }
+            set(index, ids[smallest], priorities[smallest]);
+            index = smallest;
+        }
+        set(index, id, priority);
+    }
+}
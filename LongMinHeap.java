@@ -0,0 +1,175 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A LongMinHeap is a priority queue of primitive long keys, the smallest first. Keys are
+ * kept in a single {@code long} array, so queuing one neither boxes a {@code Long} nor
+ * compares through {@code compareTo}.
+ *
+ * <p>It is the plain-key counterpart of {@link IntKeyMinHeap}, for callers that pack
+ * everything they order by into one key, as {@link TopologicalSort} packs a priority and
+ * a rank. Equal keys may be queued more than once.
+ */
+public class LongMinHeap {
+    /**
+     * The default initial capacity of the heap when empty.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The keys in heap order.
+     */
+    private long[] keys;
+
+    /**
+     * The number of keys currently in the heap.
+     */
+    private int size = 0;
+
+    /**
+     * Constructs an empty LongMinHeap with the default initial capacity.
+     */
+    public LongMinHeap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty LongMinHeap with the given initial capacity.
+     *
+     * @param capacity the expected number of keys.
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public LongMinHeap(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative.");
+        }
+        this.keys = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Inserts a key, maintaining the min-heap property.
+     *
+     * @param key the key to add.
+     */
+    public void offer(long key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2); // Double the capacity if needed.
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (key >= keys[parent]) {
+                break;
+            }
+            keys[index] = keys[parent];
+            index = parent;
+        }
+        keys[index] = key;
+    }
+
+    /**
+     * Retrieves and removes the smallest key.
+     *
+     * @return the smallest key.
+     * @throws NoSuchElementException if the heap is empty.
+     */
+    public long poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long result = keys[0];
+        long key = keys[--size];
+        int index = 0;
+        while (index * 2 + 1 < size) {
+            int child = index * 2 + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[index] = keys[child];
+            index = child;
+        }
+        keys[index] = key;
+        return result;
+    }
+
+    /**
+     * Retrieves, but does not remove, the smallest key.
+     *
+     * @return the smallest key.
+     * @throws NoSuchElementException if the heap is empty.
+     */
+    public long peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[0];
+    }
+
+    /**
+     * Returns the number of keys in the heap.
+     *
+     * @return the size of the heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the heap is empty.
+     *
+     * @return true if the heap is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all keys from the heap, keeping the allocated capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Randomized test: interleaves offers and polls and checks that every poll returns
+     * the smallest key queued, against a sorted copy.
+     *
+     * @param args 0 - optional number of trials
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = 4177;
+        for (int trial = 0; trial < trials; trial++) {
+            LongMinHeap heap = new LongMinHeap(trial % 3);
+            long[] expected = new long[64];
+            int count = 0;
+            for (int op = 0; op < 64; op++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                if (count == 0 || (seed >>> 63) == 0) {
+                    long key = (seed >> 20) % 50; // Small range, so keys repeat
+                    heap.offer(key);
+                    expected[count++] = key;
+                    continue;
+                }
+                Arrays.sort(expected, 0, count);
+                long smallest = expected[0];
+                System.arraycopy(expected, 1, expected, 0, --count);
+                if (heap.peek() != smallest || heap.poll() != smallest || heap.size() != count) {
+                    System.out.println("Trial " + trial + ": polled the wrong key");
+                    return;
+                }
+            }
+        }
+        try {
+            new LongMinHeap().poll();
+            System.out.println("Trial empty: poll on an empty heap returned a key");
+            return;
+        } catch (NoSuchElementException e) {
+            // Expected
+        }
+        System.out.println("Yay 1: " + trials + " trials polled keys in order");
+    }
+}
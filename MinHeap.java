@@ -1,14 +1,16 @@
-// no additional imports!
+// java.util imports only, no other libraries!
 import java.util.Collection;
 import java.util.Queue;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 /**
- * A MinHeap is a priority queue represented as a balanced binary heap. The two
- * children of queue[n] are queue[2*n+1] and queue[2*(n+1)]. The priority queue
- * is ordered by the elements' natural ordering.
+ * A MinHeap is a priority queue represented as a balanced d-ary heap. The d
+ * children of queue[n] are queue[d*n+1] through queue[d*n+d]; by default d is 2,
+ * giving a binary heap. The priority queue is ordered by the elements' natural
+ * ordering.
  *
  * @param <E> the type of elements held in this MinHeap, which must be Comparable.
  */
@@ -18,6 +20,11 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
      */
     private static final int DEFAULT_INITIAL_CAPACITY = 11;
 
+    /**
+     * The default number of children per node.
+     */
+    private static final int DEFAULT_ARITY = 2;
+
     /**
      * The array representation of the binary heap.
      */
@@ -29,10 +36,31 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
     private int size = 0;
 
     /**
-     * Constructs an empty MinHeap with the default initial capacity.
+     * The number of children per node.
+     */
+    private final int arity;
+
+    /**
+     * Constructs an empty binary MinHeap with the default initial capacity.
      */
-    @SuppressWarnings("unchecked")
     public MinHeap() {
+        this(DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructs an empty MinHeap with the given number of children per node.
+     * Wider heaps are shallower, so polls touch fewer levels and the children
+     * compared at each level sit next to each other in memory.
+     *
+     * @param arity the number of children per node, such as 2, 4 or 8.
+     * @throws IllegalArgumentException if the arity is less than 2.
+     */
+    @SuppressWarnings("unchecked")
+    public MinHeap(int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Arity must be at least 2.");
+        }
+        this.arity = arity;
         this.queue = (Comparable<E>[]) new Comparable[DEFAULT_INITIAL_CAPACITY];
     }
 
@@ -43,11 +71,46 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
      */
     @SuppressWarnings("unchecked")
     public MinHeap(MinHeap<E> other) {
+        this.arity = other.arity;
         this.size = other.size;
         this.queue = (Comparable<E>[]) new Comparable[other.queue.length];
         System.arraycopy(other.queue, 0, this.queue, 0, other.size);
     }
 
+    /**
+     * Constructs a binary MinHeap containing the elements of the specified collection.
+     * The heap is built bottom-up in O(n) rather than by n separate offers.
+     *
+     * @param c the collection whose elements are to be placed into this heap.
+     * @throws IllegalArgumentException if the collection contains a null element.
+     */
+    public MinHeap(Collection<? extends E> c) {
+        this(DEFAULT_ARITY, c);
+    }
+
+    /**
+     * Constructs a MinHeap with the given number of children per node, containing the
+     * elements of the specified collection. The heap is built bottom-up in O(n).
+     * Use {@code Arrays.asList} to build a heap from an array.
+     *
+     * @param arity the number of children per node, such as 2, 4 or 8.
+     * @param c the collection whose elements are to be placed into this heap.
+     * @throws IllegalArgumentException if the arity is less than 2 or the collection
+     *                                  contains a null element.
+     */
+    @SuppressWarnings("unchecked")
+    public MinHeap(int arity, Collection<? extends E> c) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Arity must be at least 2.");
+        }
+        Object[] elements = checkedArray(c);
+        this.arity = arity;
+        this.queue = (Comparable<E>[]) new Comparable[Math.max(elements.length, DEFAULT_INITIAL_CAPACITY)];
+        System.arraycopy(elements, 0, queue, 0, elements.length);
+        this.size = elements.length;
+        heapify();
+    }
+
     /**
      * Inserts the specified element into the heap, maintaining the min-heap property.
      *
@@ -63,9 +126,9 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
         if (size == queue.length) {
             grow(); // Double the capacity if needed.
         }
-        queue[size] = element;
-        siftUp(size); // Restore the min-heap property.
+        place(size, element);
         size++;
+        siftUp(size - 1); // Restore the min-heap property.
         return true;
     }
 
@@ -79,13 +142,7 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
         if (size == 0) {
             return null;
         }
-        @SuppressWarnings("unchecked")
-        E result = (E) queue[0]; // Suppress unchecked cast warning.
-        queue[0] = queue[size - 1];
-        queue[size - 1] = null;
-        size--;
-        siftDown(0); // Restore the min-heap property.
-        return result;
+        return removeAt(0);
     }
 
     /**
@@ -131,15 +188,173 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
         queue = Arrays.copyOf(queue, newCapacity);
     }
 
+    /**
+     * Grows the underlying array once so it can hold at least the given number of
+     * elements, instead of doubling repeatedly.
+     *
+     * @param capacity the required capacity.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > queue.length) {
+            queue = Arrays.copyOf(queue, Math.max(capacity, queue.length * 2));
+        }
+    }
+
+    /**
+     * Restores the min-heap property over the whole array bottom-up, in O(n).
+     */
+    private void heapify() {
+        for (int i = (size - 2) / arity; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Snapshots a collection into an array, rejecting null elements.
+     *
+     * @param c the collection to copy.
+     * @return the elements of the collection.
+     * @throws IllegalArgumentException if the collection contains a null element.
+     */
+    private static Object[] checkedArray(Collection<?> c) {
+        Object[] elements = c.toArray();
+        for (Object element : elements) {
+            if (element == null) {
+                throw new IllegalArgumentException("Null elements are not allowed in MinHeap.");
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Removes every element matching the filter in one pass, then rebuilds the heap
+     * bottom-up, so bulk removal is O(n) instead of O(n) per removed element.
+     *
+     * @param filter a predicate which returns true for elements to be removed.
+     * @return true if any elements were removed.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean bulkRemove(Predicate<? super E> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            E element = (E) queue[i];
+            if (filter.test(element)) {
+                removed(element);
+            } else {
+                place(kept++, element);
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        Arrays.fill(queue, kept, size, null);
+        size = kept;
+        heapify();
+        return true;
+    }
+
+    /**
+     * Removes the element stored at the specified index, filling the hole with the
+     * last element and restoring the min-heap property around it.
+     *
+     * @param index the index of the element to remove.
+     * @return the removed element.
+     */
+    @SuppressWarnings("unchecked")
+    protected E removeAt(int index) {
+        E result = (E) queue[index];
+        unlink(index);
+        return result;
+    }
+
+    /**
+     * Removes the element stored at the specified index, filling the hole with the
+     * last element and restoring the min-heap property around it.
+     *
+     * @param index the index of the element to remove.
+     * @return the last element if it was sifted up to an index below {@code index},
+     *         or null if it stayed at or below the hole.
+     */
+    @SuppressWarnings("unchecked")
+    private E unlink(int index) {
+        E result = (E) queue[index];
+        int last = --size;
+        Comparable<E> moved = queue[last];
+        queue[last] = null;
+        E passed = null;
+        if (index != last) {
+            place(index, moved); // Replace with the last element.
+            siftDown(index); // Restore heap property.
+            if (queue[index] == moved) {
+                siftUp(index); // Adjust upwards as well.
+                if (queue[index] != moved) {
+                    passed = (E) moved;
+                }
+            }
+        }
+        removed(result);
+        return passed;
+    }
+
+    /**
+     * Returns the index of the specified element in the underlying array, or -1 if it
+     * is not present. Subclasses that track element positions override this to avoid
+     * the linear scan.
+     *
+     * @param o the object to search for in the heap.
+     * @return the index of the object, or -1 if the heap does not contain it.
+     */
+    protected int indexOf(Object o) {
+        if (o == null) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (queue[i].equals(o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Called whenever an element is stored at a new index of the underlying array.
+     * Does nothing by default; indexed subclasses use it to track element positions.
+     *
+     * @param element the element that was stored.
+     * @param index the index it now occupies.
+     */
+    protected void moved(E element, int index) {
+    }
+
+    /**
+     * Called whenever an element leaves the heap. Does nothing by default.
+     *
+     * @param element the element that was removed.
+     */
+    protected void removed(E element) {
+    }
+
+    /**
+     * Stores an element at the specified index and reports the move.
+     *
+     * @param index the index to store into.
+     * @param element the element to store.
+     */
+    @SuppressWarnings("unchecked")
+    private void place(int index, Comparable<E> element) {
+        queue[index] = element;
+        moved((E) element, index);
+    }
+
     /**
      * Restores the min-heap property by moving the element at the specified index upwards.
      *
      * @param index the index of the element to sift up.
      */
     @SuppressWarnings("unchecked")
-    private void siftUp(int index) {
+    protected void siftUp(int index) {
         while (index > 0) {
-            int parent = (index - 1) / 2;
+            int parent = (index - 1) / arity;
             if (((E) queue[index]).compareTo((E) queue[parent]) >= 0) {
                 break;
             }
@@ -154,13 +369,15 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
      * @param index the index of the element to sift down.
      */
     @SuppressWarnings("unchecked")
-    private void siftDown(int index) {
-        while (index * 2 + 1 < size) {
-            int leftChild = index * 2 + 1;
-            int rightChild = index * 2 + 2;
-            int smallest = leftChild;
-            if (rightChild < size && ((E) queue[rightChild]).compareTo((E) queue[leftChild]) < 0) {
-                smallest = rightChild;
+    protected void siftDown(int index) {
+        while (index * arity + 1 < size) {
+            int firstChild = index * arity + 1;
+            int lastChild = Math.min(firstChild + arity, size);
+            int smallest = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (((E) queue[child]).compareTo((E) queue[smallest]) < 0) {
+                    smallest = child;
+                }
             }
             if (((E) queue[index]).compareTo((E) queue[smallest]) <= 0) {
                 break;
@@ -178,8 +395,8 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
      */
     private void swap(int i, int j) {
         Comparable<E> temp = queue[i];
-        queue[i] = queue[j];
-        queue[j] = temp;
+        place(i, queue[j]);
+        place(j, temp);
     }
 
     /**
@@ -191,72 +408,144 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
      */
     @Override
     public Iterator<E> iterator() {
-        return new Iterator<E>() {
-            private int currentIndex = 0;
-
-            /**
-             * Checks if there are more elements to iterate over.
-             *
-             * @return true if there are remaining elements, false otherwise.
-             */
-            @Override
-            public boolean hasNext() {
-                return currentIndex < size; // Check if there are remaining elements.
+        return new Itr();
+    }
+
+    /**
+     * An iterator over the heap array. Removing through it fills the hole with the last
+     * element; if that element sifts up past the cursor it is remembered and returned
+     * after the array is exhausted, so every element is visited exactly once.
+     */
+    private final class Itr implements Iterator<E> {
+        /**
+         * The index of the next element to return from the array.
+         */
+        private int cursor = 0;
+
+        /**
+         * The index of the element last returned from the array, or -1.
+         */
+        private int lastRet = -1;
+
+        /**
+         * Elements moved from beyond the cursor to before it by a removal.
+         */
+        private Object[] forgotten;
+
+        /**
+         * The number of entries in {@code forgotten}.
+         */
+        private int forgottenCount = 0;
+
+        /**
+         * The number of entries of {@code forgotten} already returned.
+         */
+        private int forgottenNext = 0;
+
+        /**
+         * The forgotten element last returned, or null.
+         */
+        private E lastRetForgotten;
+
+        /**
+         * Checks if there are more elements to iterate over.
+         *
+         * @return true if there are remaining elements, false otherwise.
+         */
+        @Override
+        public boolean hasNext() {
+            return cursor < size || forgottenNext < forgottenCount;
+        }
+
+        /**
+         * Returns the next element in the iteration.
+         *
+         * @return the next element in the heap.
+         * @throws NoSuchElementException if there are no more elements to iterate over.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor < size) {
+                lastRet = cursor++;
+                return (E) queue[lastRet];
+            }
+            if (forgottenNext < forgottenCount) {
+                lastRet = -1;
+                lastRetForgotten = (E) forgotten[forgottenNext];
+                forgotten[forgottenNext++] = null;
+                return lastRetForgotten;
             }
+            throw new NoSuchElementException("No more elements in the heap.");
+        }
 
-            /**
-             * Returns the next element in the iteration.
-             *
-             * @return the next element in the heap.
-             * @throws NoSuchElementException if there are no more elements to iterate over.
-             */
-            @Override
-            public E next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException("No more elements in the heap.");
+        /**
+         * Removes the last element returned by this iterator from the heap.
+         * The heap structure is adjusted to maintain the min-heap property.
+         *
+         * @throws IllegalStateException if the remove method is called
+         *         before next or after a previous remove call.
+         */
+        @Override
+        public void remove() {
+            if (lastRet >= 0) {
+                E moved = unlink(lastRet); // The index is known, so no search is needed
+                lastRet = -1;
+                if (moved == null) {
+                    cursor--; // The hole was refilled from beyond the cursor
+                } else {
+                    forget(moved);
                 }
-                @SuppressWarnings("unchecked")
-            E result = (E) queue[currentIndex++];
-                return result;
+            } else if (lastRetForgotten != null) {
+                removeIdentical(lastRetForgotten);
+                lastRetForgotten = null;
+            } else {
+                throw new IllegalStateException("Cannot remove element at this position.");
             }
-        
-            /**
-             * Removes the last element returned by this iterator from the heap.
-             * The heap structure is adjusted to maintain the min-heap property.
-             *
-             * @throws IllegalStateException if the remove method is called
-             *         before next or after a previous remove call.
-             */
-            @Override
-            public void remove() {
-                if (currentIndex <= 0 || currentIndex > size) {
-                    throw new IllegalStateException("Cannot remove element at this position.");
-                }
-                int indexToRemove = --currentIndex;
-                MinHeap.this.remove(queue[indexToRemove]);
+        }
+
+        /**
+         * Remembers an element that moved before the cursor so it is still returned.
+         *
+         * @param element the element to return later.
+         */
+        private void forget(E element) {
+            if (forgotten == null) {
+                forgotten = new Object[4];
+            } else if (forgottenCount == forgotten.length) {
+                forgotten = Arrays.copyOf(forgotten, forgottenCount * 2);
             }
-        };
+            forgotten[forgottenCount++] = element;
+        }
     }
 
     /**
-     * Checks if the heap contains the specified element.
+     * Removes the given instance, rather than any element equal to it.
      *
-     * @param o the object to search for in the heap.
-     * @return true if the heap contains the specified object; false otherwise.
+     * @param element the element to remove.
+     * @return true if the heap held the instance; false otherwise.
      */
-    @Override
-    public boolean contains(Object o) {
-        if (o == null) {
-            return false;
-        }
+    boolean removeIdentical(Object element) {
         for (int i = 0; i < size; i++) {
-            if (queue[i].equals(o)) {
+            if (queue[i] == element) {
+                unlink(i);
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Checks if the heap contains the specified element.
+     *
+     * @param o the object to search for in the heap.
+     * @return true if the heap contains the specified object; false otherwise.
+     */
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
     /**
      * Converts the heap to an array containing all elements.
      *
@@ -301,83 +590,113 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
      */
     @Override
     public boolean remove(Object o) {
-        if (o == null) {
+        int i = indexOf(o);
+        if (i < 0) {
             return false;
         }
-        for (int i = 0; i < size; i++) {
-            if (queue[i].equals(o)) {
-                queue[i] = queue[size - 1]; // Replace with the last element.
-                queue[size - 1] = null;
-                size--;
-                siftDown(i); // Restore heap property.
-                siftUp(i);   // Adjust upwards as well.
-                return true;
-            }
-        }
-        return false;
+        removeAt(i);
+        return true;
     }
 
     /**
      * Checks if the heap contains all elements in the specified collection.
-     * This operation is not supported.
      *
      * @param c the collection to check for containment.
-     * @return always throws UnsupportedOperationException.
-     * @throws UnsupportedOperationException always.
+     * @return true if the heap contains every element of the collection.
      */
     @Override
     public boolean containsAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Adds all elements of the specified collection to the heap.
-     * This operation is not supported.
+     * Adds all elements of the specified collection to the heap. The array is grown
+     * once, and when the batch is large relative to the heap the new elements are
+     * appended and the heap is rebuilt bottom-up in O(n + k) instead of k offers.
      *
      * @param c the collection containing elements to be added to the heap.
-     * @return always throws UnsupportedOperationException.
-     * @throws UnsupportedOperationException always.
+     * @return true if the heap changed as a result of the call.
+     * @throws IllegalArgumentException if the collection is this heap or contains a null element.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public boolean addAll(Collection<? extends E> c) {
-        throw new UnsupportedOperationException();
+        if (c == this) {
+            throw new IllegalArgumentException("Cannot add a heap to itself.");
+        }
+        Object[] elements = checkedArray(c);
+        if (elements.length == 0) {
+            return false;
+        }
+        int total = size + elements.length;
+        ensureCapacity(total);
+        // k offers cost about k * log(n + k) comparisons, a rebuild costs about n + k.
+        int depth = 32 - Integer.numberOfLeadingZeros(total);
+        if ((long) elements.length * depth < total) {
+            for (Object element : elements) {
+                offer((E) element);
+            }
+            return true;
+        }
+        for (Object element : elements) {
+            place(size++, (Comparable<E>) element);
+        }
+        heapify();
+        return true;
     }
 
     /**
-     * Removes all elements in the specified collection from the heap.
-     * This operation is not supported.
+     * Removes all elements in the specified collection from the heap, in a single
+     * pass followed by a bottom-up rebuild.
      *
      * @param c the collection containing elements to be removed from the heap.
-     * @return always throws UnsupportedOperationException.
-     * @throws UnsupportedOperationException always.
+     * @return true if the heap changed as a result of the call.
      */
     @Override
     public boolean removeAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
+        return bulkRemove(c::contains);
+    }
+
+    /**
+     * Removes every element matching the filter, in a single pass followed by a
+     * bottom-up rebuild.
+     *
+     * @param filter a predicate which returns true for elements to be removed.
+     * @return true if any elements were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        return bulkRemove(filter);
     }
 
     /**
      * Retains only the elements in the heap that are contained in the specified
-     * collection. This operation is not supported.
+     * collection, in a single pass followed by a bottom-up rebuild.
      *
      * @param c the collection containing elements to be retained in the heap.
-     * @return always throws UnsupportedOperationException.
-     * @throws UnsupportedOperationException always.
+     * @return true if the heap changed as a result of the call.
      */
     @Override
     public boolean retainAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
+        return bulkRemove(e -> !c.contains(e));
     }
 
     /**
-     * Removes all elements from the heap.
-     * This operation is not supported.
-     *
-     * @throws UnsupportedOperationException always.
+     * Removes all elements from the heap, keeping the allocated capacity.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void clear() {
-        throw new UnsupportedOperationException();
+        for (int i = 0; i < size; i++) {
+            removed((E) queue[i]);
+            queue[i] = null;
+        }
+        size = 0;
     }
 
     /**
@@ -421,4 +740,74 @@ public class MinHeap<E extends Comparable<E>> implements Queue<E> {
         }
         return result;
     }
+
+    /**
+     * Randomized test of removal through the iterator: removes every even element of
+     * random heaps and checks that each element was visited exactly once, that no even
+     * element is left, that the heap order holds, and that a repeated remove() is
+     * rejected.
+     *
+     * @param args 0 - optional number of trials
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = 3103;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = (int) (seed >>> 58);
+            int arity = 2 + trial % 3;
+            boolean indexed = trial % 4 == 3;
+            MinHeap<Integer> heap = indexed ? new IndexedMinHeap<>(arity) : new MinHeap<>(arity);
+            int[] values = new int[n];
+            for (int i = 0; i < n; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                values[i] = indexed ? (int) (seed >>> 48) * 64 + i : (int) (seed >>> 59); // Distinct if indexed
+                heap.offer(values[i]);
+            }
+
+            int[] visited = new int[n];
+            int count = 0;
+            boolean rejected = true;
+            for (Iterator<Integer> it = heap.iterator(); it.hasNext(); ) {
+                int value = it.next();
+                if (count == n) {
+                    System.out.println("Trial " + trial + ": iterator returned too many elements");
+                    return;
+                }
+                visited[count++] = value;
+                if (value % 2 == 0) {
+                    it.remove();
+                    try {
+                        it.remove();
+                        rejected = false;
+                    } catch (IllegalStateException e) {
+                        // Expected: the element is already gone
+                    }
+                }
+            }
+
+            Arrays.sort(values);
+            Arrays.sort(visited, 0, count);
+            if (count != n || !Arrays.equals(values, visited)) {
+                System.out.println("Trial " + trial + ": some element was skipped or visited twice");
+                return;
+            }
+            if (!rejected) {
+                System.out.println("Trial " + trial + ": a repeated remove() was accepted");
+                return;
+            }
+            for (int i = 0; i < heap.size; i++) {
+                if ((Integer) heap.queue[i] % 2 == 0 || (i > 0
+                        && ((Integer) heap.queue[i]).compareTo((Integer) heap.queue[(i - 1) / arity]) < 0)) {
+                    System.out.println("Trial " + trial + ": heap left in a bad state");
+                    return;
+                }
+                if (indexed && heap.indexOf(heap.queue[i]) != i) {
+                    System.out.println("Trial " + trial + ": index lost track of an element");
+                    return;
+                }
+            }
+        }
+        System.out.println("Yay 1: iterator removal visited every element once in " + trials + " trials");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,568 @@
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Wraps a {@link ThreeTenGraph}, keeping it acyclic and keeping a topological order of
+ * its vertices up to date as it changes, so order queries never re-sort the graph.
+ *
+ * <p>The order is maintained with the Pearce-Kelly algorithm. Adding an edge that already
+ * points forward in the order costs O(1). Adding an edge {@code x -> y} that points
+ * backward searches only the affected region: the vertices reachable from {@code y} and
+ * the vertices reaching {@code x} whose positions lie between the two, and then reorders
+ * just those vertices among the positions they already held. If the search reaches
+ * {@code x} from {@code y}, the edge would close a cycle and is rejected before the graph
+ * changes. Removing edges never invalidates the order, and removing a vertex leaves a
+ * gap that is closed lazily.
+ *
+ * <p>The gaps are closed by {@link #indexOf} and {@link #getOrder}, so those queries
+ * may write to the order arrays. An instance is therefore not safe for concurrent
+ * readers, and must be shared between threads only under external synchronization.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class OrderedThreeTenGraph<V extends Comparable<V>> {
+    /**
+     * The graph whose order is maintained.
+     */
+    private final ThreeTenGraph<V> graph = new ThreeTenGraph<>();
+
+    /**
+     * The position of each vertex id in the order.
+     */
+    private int[] position = new int[16];
+
+    /**
+     * The vertex id at each position, or -1 for the gap left by a removed vertex.
+     */
+    private int[] order = new int[16];
+
+    /**
+     * The number of positions in use, including gaps.
+     */
+    private int length = 0;
+
+    /**
+     * The number of gaps in {@code order}.
+     */
+    private int gaps = 0;
+
+    /**
+     * The search stamp of each vertex id; an id is visited when it holds {@code stamp}.
+     */
+    private int[] visited = new int[16];
+
+    /**
+     * The stamp of the current search.
+     */
+    private int stamp = 0;
+
+    /**
+     * The ids still to be expanded by the current search.
+     */
+    private int[] stack = new int[16];
+
+    /**
+     * The number of ids on {@code stack}.
+     */
+    private int stackSize;
+
+    /**
+     * The ids found by the current forward search.
+     */
+    private int[] forward = new int[16];
+
+    /**
+     * The number of ids in {@code forward}.
+     */
+    private int forwardSize;
+
+    /**
+     * The ids found by the current backward search.
+     */
+    private int[] backward = new int[16];
+
+    /**
+     * The number of ids in {@code backward}.
+     */
+    private int backwardSize;
+
+    /**
+     * Whether the current forward search reached the source of the new edge.
+     */
+    private boolean cycle;
+
+    /**
+     * Adds a vertex at the end of the order.
+     *
+     * @param vertex the vertex to add
+     * @return true if the vertex was added; false if it was already present
+     * @throws IllegalArgumentException if the vertex is null
+     */
+    public boolean addVertex(V vertex) {
+        if (!graph.addVertex(vertex)) {
+            return false;
+        }
+        int id = graph.idOf(vertex);
+        ensureIdCapacity(graph.getVertexIdBound());
+        if (length == order.length) {
+            order = Arrays.copyOf(order, length * 2);
+        }
+        order[length] = id;
+        position[id] = length++;
+        return true;
+    }
+
+    /**
+     * Adds an edge from v1 to v2, moving vertices in the order if the edge points
+     * backward. Costs O(1) for a forward edge, otherwise time proportional to the
+     * vertices and edges in the affected region plus sorting them.
+     *
+     * @param e  the edge to add
+     * @param v1 the source vertex
+     * @param v2 the destination vertex
+     * @return true if the edge was added; false if a vertex is missing, the edge is
+     *         already in the graph, or the vertices are already connected
+     * @throws IllegalArgumentException if any parameter is null, or if the edge would
+     *                                  create a cycle
+     */
+    public boolean addEdge(Destination<V> e, V v1, V v2) {
+        if (e == null || v1 == null || v2 == null) {
+            throw new IllegalArgumentException("Null values not allowed");
+        }
+        if (!graph.containsVertex(v1) || !graph.containsVertex(v2) || graph.containsEdge(e)
+                || graph.findEdge(v1, v2) != null) {
+            return false;
+        }
+
+        int x = graph.idOf(v1);
+        int y = graph.idOf(v2);
+        if (x == y) {
+            throw new IllegalArgumentException("Edge would create a cycle.");
+        }
+        if (position[y] < position[x]) {
+            reorder(x, y); // Throws before the graph changes if there is a cycle
+        }
+        return graph.addEdge(e, v1, v2);
+    }
+
+    /**
+     * Removes a vertex and its edges. Its position is left as a gap in the order.
+     *
+     * @param vertex the vertex to remove
+     * @return true if the vertex was removed; false if it was not present
+     */
+    public boolean removeVertex(V vertex) {
+        int id = graph.idOf(vertex);
+        if (id < 0) {
+            return false;
+        }
+        graph.removeVertex(vertex);
+        order[position[id]] = -1;
+        gaps++;
+        if (gaps > length / 2) {
+            compact(); // Keeps gaps from outnumbering vertices
+        }
+        return true;
+    }
+
+    /**
+     * Removes an edge. The order stays valid, so nothing moves.
+     *
+     * @param edge the edge to remove
+     * @return true if the edge was removed; false if it was not present
+     */
+    public boolean removeEdge(Destination<V> edge) {
+        return graph.removeEdge(edge);
+    }
+
+    /**
+     * Returns whether v1 comes before v2 in the current order, in O(1). Whenever there
+     * is a path from v1 to v2, v1 comes first.
+     *
+     * @param v1 the first vertex
+     * @param v2 the second vertex
+     * @return true if v1 is placed before v2
+     * @throws IllegalArgumentException if either vertex is not in the graph
+     */
+    public boolean precedes(V v1, V v2) {
+        int a = graph.idOf(v1);
+        int b = graph.idOf(v2);
+        if (a < 0 || b < 0) {
+            throw new IllegalArgumentException("Graph does not contain vertex");
+        }
+        return position[a] < position[b];
+    }
+
+    /**
+     * Returns the index of a vertex in {@link #getOrder()}. Closes any gaps left by
+     * removed vertices first, which costs O(V) once after a run of removals and O(1)
+     * otherwise.
+     *
+     * @param vertex the vertex to look up
+     * @return the index of the vertex in the order, or -1 if it is not in the graph
+     */
+    public int indexOf(V vertex) {
+        int id = graph.idOf(vertex);
+        if (id < 0) {
+            return -1;
+        }
+        compact();
+        return position[id];
+    }
+
+    /**
+     * Returns a read-only view of the vertices in topological order. The view is valid
+     * until the graph next changes. Closes any gaps left by removed vertices first.
+     *
+     * @return the vertices in topological order
+     */
+    public List<V> getOrder() {
+        compact();
+        int size = length;
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                return graph.vertexAt(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns whether the graph contains a vertex.
+     *
+     * @param vertex the vertex to look for
+     * @return true if the vertex is in the graph
+     */
+    public boolean containsVertex(V vertex) {
+        return graph.containsVertex(vertex);
+    }
+
+    /**
+     * Returns a view of the successors of a vertex, in ascending order.
+     *
+     * @param vertex the vertex whose successors are to be returned
+     * @return the successors of the vertex
+     */
+    public Collection<V> getSuccessors(V vertex) {
+        return graph.getSuccessors(vertex);
+    }
+
+    /**
+     * Returns a view of the predecessors of a vertex.
+     *
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return the predecessors of the vertex
+     */
+    public Collection<V> getPredecessors(V vertex) {
+        return graph.getPredecessors(vertex);
+    }
+
+    /**
+     * Returns the number of vertices in the graph.
+     *
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return graph.getVertexCount();
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return graph.getEdgeCount();
+    }
+
+    /**
+     * Returns an immutable snapshot of the graph, for example to run the other sorts.
+     *
+     * @return a snapshot of the current vertices and edges
+     */
+    public FrozenGraph<V> freeze() {
+        return graph.freeze();
+    }
+
+    /**
+     * Restores the order for a new edge {@code x -> y} with y placed before x. Finds the
+     * vertices reachable from y that sit no later than x, and the vertices reaching x
+     * that sit later than y, then places the second group before the first, each in its
+     * existing relative order, using the positions the two groups already held.
+     *
+     * @param x the id of the source of the new edge
+     * @param y the id of the destination of the new edge
+     * @throws IllegalArgumentException if x is reachable from y
+     */
+    private void reorder(int x, int y) {
+        int lower = position[y];
+        int upper = position[x];
+
+        // Forward search from y, bounded above by x's position
+        newSearch(y);
+        forwardSize = 0;
+        cycle = false;
+        while (stackSize > 0 && !cycle) {
+            int current = stack[--stackSize];
+            forward = append(forward, forwardSize++, current);
+            graph.forEachSuccessor(graph.vertexAt(current), w -> {
+                int id = graph.idOf(w);
+                if (id == x) {
+                    cycle = true;
+                } else if (visited[id] != stamp && position[id] < upper) {
+                    push(id);
+                }
+            });
+        }
+        if (cycle) {
+            throw new IllegalArgumentException("Edge would create a cycle.");
+        }
+
+        // Backward search from x, bounded below by y's position
+        newSearch(x);
+        backwardSize = 0;
+        while (stackSize > 0) {
+            int current = stack[--stackSize];
+            backward = append(backward, backwardSize++, current);
+            graph.forEachPredecessor(graph.vertexAt(current), w -> {
+                int id = graph.idOf(w);
+                if (visited[id] != stamp && position[id] > lower) {
+                    push(id);
+                }
+            });
+        }
+
+        // Sort each group by position, then deal out the pooled positions in order
+        int[] backwardPositions = positionsOf(backward, backwardSize);
+        int[] forwardPositions = positionsOf(forward, forwardSize);
+        int[] pool = new int[backwardSize + forwardSize];
+        System.arraycopy(backwardPositions, 0, pool, 0, backwardSize);
+        System.arraycopy(forwardPositions, 0, pool, backwardSize, forwardSize);
+        Arrays.sort(pool);
+
+        int next = 0;
+        for (int i = 0; i < backwardSize; i++) {
+            backward[i] = order[backwardPositions[i]];
+        }
+        for (int i = 0; i < forwardSize; i++) {
+            forward[i] = order[forwardPositions[i]];
+        }
+        for (int i = 0; i < backwardSize; i++) {
+            place(backward[i], pool[next++]);
+        }
+        for (int i = 0; i < forwardSize; i++) {
+            place(forward[i], pool[next++]);
+        }
+    }
+
+    /**
+     * Returns the sorted positions of a group of ids.
+     *
+     * @param ids the ids
+     * @param count the number of ids
+     * @return their positions, ascending
+     */
+    private int[] positionsOf(int[] ids, int count) {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = position[ids[i]];
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Stores a vertex id at a position.
+     *
+     * @param id the vertex id
+     * @param pos the position
+     */
+    private void place(int id, int pos) {
+        order[pos] = id;
+        position[id] = pos;
+    }
+
+    /**
+     * Starts a new search from an id, with nothing else visited.
+     *
+     * @param start the id to search from
+     */
+    private void newSearch(int start) {
+        if (++stamp == 0) {
+            Arrays.fill(visited, 0); // The stamp wrapped around
+            stamp = 1;
+        }
+        stackSize = 0;
+        push(start);
+    }
+
+    /**
+     * Marks an id visited and pushes it onto the search stack.
+     *
+     * @param id the id to push
+     */
+    private void push(int id) {
+        visited[id] = stamp;
+        stack = append(stack, stackSize++, id);
+    }
+
+    /**
+     * Stores a value at an index of an array, growing the array if needed.
+     *
+     * @param array the array
+     * @param index the index to store at
+     * @param value the value
+     * @return the array, or a larger copy of it
+     */
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Grows the id-indexed arrays to hold the given number of ids.
+     *
+     * @param bound one more than the largest id to hold
+     */
+    private void ensureIdCapacity(int bound) {
+        if (bound > position.length) {
+            int capacity = Math.max(bound, position.length * 2);
+            position = Arrays.copyOf(position, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+        }
+    }
+
+    /**
+     * Closes the gaps left by removed vertices, keeping the order of the rest.
+     */
+    private void compact() {
+        if (gaps == 0) {
+            return;
+        }
+        int kept = 0;
+        for (int pos = 0; pos < length; pos++) {
+            if (order[pos] >= 0) {
+                place(order[pos], kept++);
+            }
+        }
+        length = kept;
+        gaps = 0;
+    }
+
+    //********************************************************************************
+    //   testing code goes here... edit this as much as you want!
+    //********************************************************************************
+
+    /**
+     * Randomized test: inserts and removes random edges and vertices, checking after
+     * every change that each edge points forward in the maintained order and that edges
+     * are rejected exactly when they would close a cycle.
+     *
+     * @param args 0 - optional number of vertices, 1 - optional number of operations
+     */
+    public static void main(String[] args) {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+        Random random = new Random(3103);
+        OrderedThreeTenGraph<Integer> graph = new OrderedThreeTenGraph<>();
+        for (int v = 0; v < vertices; v++) {
+            graph.addVertex(v);
+        }
+
+        int rejected = 0;
+        for (int op = 0; op < operations; op++) {
+            int a = random.nextInt(vertices);
+            int b = random.nextInt(vertices);
+            if (op % 50 == 49) {
+                graph.removeVertex(a);
+                graph.addVertex(a);
+                continue;
+            }
+            boolean reaches = reaches(graph, b, a);
+            try {
+                graph.addEdge(new Destination<>(null, op), a, b);
+                if (reaches) {
+                    System.out.println("Accepted " + a + " -> " + b + " which closes a cycle");
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                if (!reaches) {
+                    System.out.println("Rejected " + a + " -> " + b + " which is acyclic");
+                    return;
+                }
+                rejected++;
+            }
+            if (!isValid(graph)) {
+                System.out.println("Order broken after operation " + op);
+                return;
+            }
+        }
+        System.out.println("Yay 1: order stayed valid through " + operations + " operations, "
+                + rejected + " cyclic edges rejected");
+    }
+
+    /**
+     * Checks whether there is a path between two vertices, by plain search.
+     *
+     * @param graph the graph
+     * @param from the start vertex
+     * @param to the vertex to reach
+     * @return true if to is reachable from from
+     */
+    private static boolean reaches(OrderedThreeTenGraph<Integer> graph, int from, int to) {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        HashSet<Integer> seen = new HashSet<>();
+        queue.add(from);
+        seen.add(from);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (current == to) {
+                return true;
+            }
+            for (int next : graph.getSuccessors(current)) {
+                if (seen.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that every edge points forward in the order.
+     *
+     * @param graph the graph
+     * @return true if the order is a valid topological order
+     */
+    private static boolean isValid(OrderedThreeTenGraph<Integer> graph) {
+        List<Integer> order = graph.getOrder();
+        if (order.size() != graph.getVertexCount()) {
+            return false;
+        }
+        for (Integer v : order) {
+            for (Integer w : graph.getSuccessors(v)) {
+                if (!graph.precedes(v, w)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,435 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Dijkstra shortest paths over a {@link FrozenGraph}, treating each edge's
+ * {@link Destination#priority} as its length.
+ *
+ * <p>The frontier is an {@link IntKeyMinHeap} of vertex ids, so relaxing an edge is an
+ * O(log V) decrease-key rather than a duplicate insertion. Distances, predecessors and
+ * the heap are scratch space sized once for the graph and reused by every search:
+ * entries are stamped with the search that wrote them, so nothing is cleared between
+ * searches and a single-source search allocates nothing. A search can stop as soon as
+ * its target is settled.
+ *
+ * <p>An engine keeps the results of its latest search and is not thread-safe. Use
+ * {@link #distances(List, List, ForkJoinPool)} to answer many queries at once; it gives
+ * each task its own scratch space over the same graph.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class ShortestPaths<V extends Comparable<V>> {
+    /**
+     * The graph being searched.
+     */
+    private final FrozenGraph<V> graph;
+
+    /**
+     * The tentative or final distance of each id written by the current search.
+     */
+    private final int[] distance;
+
+    /**
+     * The predecessor of each id on a shortest path, or -1 for a source.
+     */
+    private final int[] previous;
+
+    /**
+     * The search that last wrote each id's distance.
+     */
+    private final int[] reached;
+
+    /**
+     * The ids reached but not yet settled, by tentative distance.
+     */
+    private final IntKeyMinHeap frontier;
+
+    /**
+     * The stamp of the current search.
+     */
+    private int search = 0;
+
+    /**
+     * Constructs an engine over the current snapshot of a graph.
+     *
+     * @param graph the graph to search
+     * @throws IllegalArgumentException if the graph is null or has a negative edge priority
+     */
+    public ShortestPaths(ThreeTenGraph<V> graph) {
+        this(graph == null ? null : graph.freeze());
+    }
+
+    /**
+     * Constructs an engine over a frozen graph.
+     *
+     * @param graph the graph to search
+     * @throws IllegalArgumentException if the graph is null or has a negative edge priority
+     */
+    public ShortestPaths(FrozenGraph<V> graph) {
+        this.graph = checked(graph);
+        int n = graph.getVertexCount();
+        this.distance = new int[n];
+        this.previous = new int[n];
+        this.reached = new int[n];
+        this.frontier = new IntKeyMinHeap(n);
+    }
+
+    /**
+     * Constructs an engine over the same graph as another, with its own scratch space.
+     *
+     * @param other the engine whose graph is searched
+     */
+    private ShortestPaths(ShortestPaths<V> other) {
+        int n = other.graph.getVertexCount();
+        this.graph = other.graph;
+        this.distance = new int[n];
+        this.previous = new int[n];
+        this.reached = new int[n];
+        this.frontier = new IntKeyMinHeap(n);
+    }
+
+    /**
+     * Checks that a graph can be searched with Dijkstra's algorithm.
+     *
+     * @param <V> the type of vertices in the graph
+     * @param graph the graph
+     * @return the graph
+     * @throws IllegalArgumentException if the graph is null or has a negative edge priority
+     */
+    private static <V extends Comparable<V>> FrozenGraph<V> checked(FrozenGraph<V> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        for (int pos = 0; pos < graph.getEdgeCount(); pos++) {
+            if (graph.priority(pos) < 0) {
+                throw new IllegalArgumentException("Edge priorities cannot be negative");
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Finds the shortest distance from one vertex to another, stopping once the target
+     * is settled. Afterwards {@link #distanceTo} and {@link #pathTo} answer for every
+     * vertex settled on the way.
+     *
+     * @param source the vertex to start from
+     * @param target the vertex to stop at, or null to settle every reachable vertex
+     * @return the distance to the target, or -1 if it is unreachable or null
+     * @throws IllegalArgumentException if a vertex is not in the graph
+     */
+    public int search(V source, V target) {
+        int from = graph.idOf(source);
+        if (from < 0) {
+            throw new IllegalArgumentException("Graph does not contain source vertex");
+        }
+        begin();
+        reach(from, 0, -1);
+        return run(targetId(target));
+    }
+
+    /**
+     * Finds the shortest distance from the nearest of several vertices to another,
+     * stopping once the target is settled. Afterwards {@link #distanceTo} and
+     * {@link #pathTo} answer for every vertex settled on the way.
+     *
+     * @param sources the vertices to start from, all at distance 0
+     * @param target the vertex to stop at, or null to settle every reachable vertex
+     * @return the distance to the target, or -1 if it is unreachable or null
+     * @throws IllegalArgumentException if sources is null or a vertex is not in the graph
+     */
+    public int search(Collection<? extends V> sources, V target) {
+        if (sources == null) {
+            throw new IllegalArgumentException("Sources cannot be null");
+        }
+        int to = targetId(target);
+        begin();
+        for (V source : sources) {
+            int from = graph.idOf(source);
+            if (from < 0) {
+                throw new IllegalArgumentException("Graph does not contain source vertex");
+            }
+            if (reached[from] != search) {
+                reach(from, 0, -1);
+            }
+        }
+        return run(to);
+    }
+
+    /**
+     * Returns the shortest distance to a vertex found by the latest search.
+     *
+     * @param vertex the vertex
+     * @return its distance, or -1 if the latest search did not settle it
+     */
+    public int distanceTo(V vertex) {
+        int id = graph.idOf(vertex);
+        return isSettled(id) ? distance[id] : -1;
+    }
+
+    /**
+     * Returns a shortest path to a vertex found by the latest search.
+     *
+     * @param vertex the vertex
+     * @return the vertices from a source to the vertex, or an empty list if the latest
+     *         search did not settle it
+     */
+    public List<V> pathTo(V vertex) {
+        int id = graph.idOf(vertex);
+        if (!isSettled(id)) {
+            return Collections.emptyList();
+        }
+        ArrayList<V> path = new ArrayList<>();
+        for (; id >= 0; id = previous[id]) {
+            path.add(graph.vertexAt(id));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Answers many source-to-target distance queries on a pool. The queries are split
+     * into one batch per worker, and each batch reuses one engine's scratch space.
+     *
+     * @param sources the source of each query
+     * @param targets the target of each query
+     * @param pool the pool that runs the queries
+     * @return the distance for each query, or -1 where the target is unreachable
+     * @throws IllegalArgumentException if any parameter is null, the lists differ in
+     *                                  size, or a vertex is not in the graph
+     */
+    public int[] distances(List<? extends V> sources, List<? extends V> targets, ForkJoinPool pool) {
+        if (sources == null || targets == null || pool == null) {
+            throw new IllegalArgumentException("Sources, targets or pool cannot be null");
+        }
+        if (sources.size() != targets.size()) {
+            throw new IllegalArgumentException("Every query needs one source and one target");
+        }
+
+        int queries = sources.size();
+        int[] result = new int[queries];
+        int batches = Math.max(1, Math.min(queries, pool.getParallelism()));
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(batches);
+        for (int b = 0; b < batches; b++) {
+            int from = (int) ((long) queries * b / batches);
+            int to = (int) ((long) queries * (b + 1) / batches);
+            tasks.add(() -> {
+                ShortestPaths<V> engine = new ShortestPaths<>(this);
+                for (int q = from; q < to; q++) {
+                    result[q] = engine.search(sources.get(q), targets.get(q));
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw new IllegalStateException("Query failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Queries were interrupted", e);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new search, invalidating every distance written by earlier ones.
+     */
+    private void begin() {
+        if (++search == 0) {
+            Arrays.fill(reached, 0); // The stamp wrapped around
+            search = 1;
+        }
+        frontier.clear();
+    }
+
+    /**
+     * Records a first tentative distance for an id and adds it to the frontier.
+     *
+     * @param id the id reached
+     * @param dist its tentative distance
+     * @param from the id it was reached from, or -1
+     */
+    private void reach(int id, int dist, int from) {
+        reached[id] = search;
+        distance[id] = dist;
+        previous[id] = from;
+        frontier.offer(id, dist);
+    }
+
+    /**
+     * Settles ids in order of distance until the target is settled or the frontier is
+     * empty.
+     *
+     * @param target the id to stop at, or -1 to settle everything reachable
+     * @return the distance to the target, or -1 if it was not reached
+     */
+    private int run(int target) {
+        while (!frontier.isEmpty()) {
+            int current = frontier.poll();
+            int dist = distance[current];
+            if (current == target) {
+                return dist;
+            }
+            for (int pos = graph.outStart(current); pos < graph.outEnd(current); pos++) {
+                int neighbor = graph.target(pos);
+                long arrival = (long) dist + graph.priority(pos);
+                if (arrival > Integer.MAX_VALUE) {
+                    throw new ArithmeticException("Path length overflows an int");
+                }
+                if (reached[neighbor] != search) {
+                    reach(neighbor, (int) arrival, current);
+                } else if (arrival < distance[neighbor] && frontier.contains(neighbor)) {
+                    distance[neighbor] = (int) arrival;
+                    previous[neighbor] = current;
+                    frontier.decreaseKey(neighbor, (int) arrival);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the id of a search target.
+     *
+     * @param target the target, or null for none
+     * @return its id, or -1 for none
+     * @throws IllegalArgumentException if the target is not in the graph
+     */
+    private int targetId(V target) {
+        if (target == null) {
+            return -1;
+        }
+        int id = graph.idOf(target);
+        if (id < 0) {
+            throw new IllegalArgumentException("Graph does not contain target vertex");
+        }
+        return id;
+    }
+
+    /**
+     * Returns whether the latest search settled an id.
+     *
+     * @param id the id, or -1
+     * @return true if its distance is final
+     */
+    private boolean isSettled(int id) {
+        return id >= 0 && reached[id] == search && !frontier.contains(id);
+    }
+
+    /**
+     * Tests distances and paths on random graphs against Bellman-Ford relaxation, both
+     * single-source and in parallel batches, and that negative priorities are rejected.
+     *
+     * @param args 0 - optional number of random graphs
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        long seed = 2503;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = 1 + (int) (seed >>> 59);
+            ThreeTenGraph<Integer> graph = new ThreeTenGraph<>();
+            for (int v = 0; v < n; v++) {
+                graph.addVertex(v);
+            }
+            for (int from = 0; from < n; from++) {
+                for (int to = 0; to < n; to++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    if ((seed >>> 62) == 0) { // One chance in four
+                        graph.addEdge(new Destination<>(to, (int) (seed >>> 40) % 20), from, to);
+                    }
+                }
+            }
+
+            // Bellman-Ford from every source: n - 1 rounds of relaxing every edge
+            long[][] expected = new long[n][n];
+            for (int source = 0; source < n; source++) {
+                Arrays.fill(expected[source], Long.MAX_VALUE);
+                expected[source][source] = 0;
+                for (int round = 1; round < n; round++) {
+                    for (Destination<Integer> edge : graph.getEdges()) {
+                        int from = graph.getSource(edge);
+                        if (expected[source][from] != Long.MAX_VALUE) {
+                            int to = graph.getDest(edge);
+                            expected[source][to] = Math.min(expected[source][to],
+                                    expected[source][from] + edge.getPriority());
+                        }
+                    }
+                }
+            }
+
+            ShortestPaths<Integer> engine = new ShortestPaths<>(graph);
+            ArrayList<Integer> sources = new ArrayList<>();
+            ArrayList<Integer> targets = new ArrayList<>();
+            for (int source = 0; source < n; source++) {
+                engine.search(source, null);
+                for (int to = 0; to < n; to++) {
+                    long want = expected[source][to] == Long.MAX_VALUE ? -1 : expected[source][to];
+                    List<Integer> path = engine.pathTo(to);
+                    long length = 0;
+                    for (int i = 1; i < path.size(); i++) {
+                        length += graph.findEdge(path.get(i - 1), path.get(i)).getPriority();
+                    }
+                    if (engine.distanceTo(to) != want || (want >= 0 && (path.get(0) != source
+                            || path.get(path.size() - 1) != to || length != want))
+                            || (want < 0 && !path.isEmpty())) {
+                        System.out.println("Trial " + trial + ": wrong distance or path from " + source + " to " + to);
+                        return;
+                    }
+                    sources.add(source);
+                    targets.add(to);
+                }
+            }
+
+            int[] batch = engine.distances(sources, targets, pool);
+            for (int q = 0; q < batch.length; q++) {
+                long want = expected[sources.get(q)][targets.get(q)];
+                if (batch[q] != (want == Long.MAX_VALUE ? -1 : want)) {
+                    System.out.println("Trial " + trial + ": wrong batched distance for query " + q);
+                    return;
+                }
+            }
+        }
+        pool.shutdown();
+        System.out.println("Yay 1: " + trials + " random graphs match Bellman-Ford, single and batched");
+
+        // Stopping at the target, and starting from the nearest of several sources
+        ThreeTenGraph<String> graph = new ThreeTenGraph<>();
+        for (String v : new String[] {"A", "B", "C", "D"}) {
+            graph.addVertex(v);
+        }
+        graph.addEdge(new Destination<>("B", 1), "A", "B");
+        graph.addEdge(new Destination<>("C", 5), "A", "C");
+        graph.addEdge(new Destination<>("C", 1), "B", "C");
+        graph.addEdge(new Destination<>("D", 4), "C", "D");
+        graph.addEdge(new Destination<>("C", 1), "D", "C");
+        ShortestPaths<String> engine = new ShortestPaths<>(graph);
+        if (engine.search("A", "C") == 2 && engine.pathTo("C").equals(Arrays.asList("A", "B", "C"))
+                && engine.distanceTo("D") == -1 && engine.search(Arrays.asList("A", "D"), "C") == 1
+                && engine.pathTo("C").equals(Arrays.asList("D", "C"))) {
+            System.out.println("Yay 2: early stop and multiple sources are correct");
+        }
+
+        graph.addEdge(new Destination<>("A", -1), "D", "A");
+        try {
+            new ShortestPaths<>(graph);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Yay 3: negative priority rejected");
+        }
+    }
+}
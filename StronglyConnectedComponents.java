@@ -0,0 +1,396 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The strongly connected components of a {@link FrozenGraph}, found with an iterative
+ * version of Tarjan's algorithm in one O(V + E) pass. Create one with
+ * {@link TopologicalSort#components}.
+ *
+ * <p>Two vertices share a component when each can reach the other, so every cycle lies
+ * inside one component. A component is cyclic when it has more than one vertex or a
+ * vertex with an edge to itself; {@link #getCycles()} lists exactly those, which makes
+ * it a complete report of the vertices that stop a graph from being sorted.
+ *
+ * <p>Components are numbered in topological order of the condensed graph, where each
+ * component is collapsed to a single vertex: every edge between two components goes
+ * from a lower number to a higher one. {@link #getCondensedOrder()} therefore sorts any
+ * graph, cyclic or not, placing the members of each cycle together. Members of a
+ * component are listed in the order they were added to the graph.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class StronglyConnectedComponents<V extends Comparable<V>> {
+    /**
+     * The graph the components were found in.
+     */
+    private final FrozenGraph<V> graph;
+
+    /**
+     * The component number of each vertex id.
+     */
+    private final int[] component;
+
+    /**
+     * The position in {@code members} where each component starts, plus a final end.
+     */
+    private final int[] memberStart;
+
+    /**
+     * The vertex ids grouped by component.
+     */
+    private final int[] members;
+
+    /**
+     * Whether each component contains a cycle.
+     */
+    private final boolean[] cyclic;
+
+    /**
+     * Constructs the result of a component search.
+     *
+     * @param graph the graph that was searched
+     * @param component the component number of each id
+     * @param memberStart the start of each component in {@code members}, plus the end
+     * @param members the ids grouped by component
+     * @param cyclic whether each component contains a cycle
+     */
+    private StronglyConnectedComponents(FrozenGraph<V> graph, int[] component, int[] memberStart,
+            int[] members, boolean[] cyclic) {
+        this.graph = graph;
+        this.component = component;
+        this.memberStart = memberStart;
+        this.members = members;
+        this.cyclic = cyclic;
+    }
+
+    /**
+     * Finds the strongly connected components of a frozen graph. The depth-first search
+     * runs on explicit int stacks, so deep chains cannot overflow the call stack.
+     *
+     * @param <V> the type of vertices in the graph
+     * @param graph the graph to search
+     * @return the components of the graph
+     */
+    static <V extends Comparable<V>> StronglyConnectedComponents<V> compute(FrozenGraph<V> graph) {
+        int n = graph.getVertexCount();
+        int[] index = new int[n];     // Discovery index + 1, or 0 if not yet visited
+        int[] low = new int[n];       // Smallest discovery index reachable, + 1
+        int[] found = new int[n];     // Component in order of completion, or -1 while open
+        int[] frames = new int[n];    // The DFS path
+        int[] edgeCursor = new int[n]; // For each path frame, the next out-edge position
+        int[] open = new int[n];      // Tarjan's stack of visited ids without a component
+        int openSize = 0;
+        int nextIndex = 0;
+        int count = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            frames[0] = root;
+            edgeCursor[0] = graph.outStart(root);
+            index[root] = low[root] = ++nextIndex;
+            found[root] = -1;
+            open[openSize++] = root;
+
+            while (depth >= 0) {
+                int current = frames[depth];
+                int pos = edgeCursor[depth];
+                if (pos < graph.outEnd(current)) {
+                    edgeCursor[depth] = pos + 1;
+                    int neighbor = graph.target(pos);
+                    if (index[neighbor] == 0) {
+                        index[neighbor] = low[neighbor] = ++nextIndex;
+                        found[neighbor] = -1;
+                        open[openSize++] = neighbor;
+                        frames[++depth] = neighbor;
+                        edgeCursor[depth] = graph.outStart(neighbor);
+                    } else if (found[neighbor] < 0) {
+                        low[current] = Math.min(low[current], index[neighbor]);
+                    }
+                    continue;
+                }
+
+                // All edges explored: close a component if current is its root
+                if (low[current] == index[current]) {
+                    int member;
+                    do {
+                        member = open[--openSize];
+                        found[member] = count;
+                    } while (member != current);
+                    count++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = frames[depth];
+                    low[parent] = Math.min(low[parent], low[current]);
+                }
+            }
+        }
+
+        // Tarjan completes sinks first, so reverse the numbering for topological order
+        int[] component = found;
+        int[] memberStart = new int[count + 1];
+        for (int id = 0; id < n; id++) {
+            component[id] = count - 1 - found[id];
+            memberStart[component[id] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            memberStart[c + 1] += memberStart[c];
+        }
+        int[] members = new int[n];
+        int[] fill = new int[count];
+        for (int id = 0; id < n; id++) {
+            int c = component[id];
+            members[memberStart[c] + fill[c]++] = id;
+        }
+
+        boolean[] cyclic = new boolean[count];
+        for (int c = 0; c < count; c++) {
+            int first = members[memberStart[c]];
+            cyclic[c] = memberStart[c + 1] - memberStart[c] > 1 || graph.edgeBetween(first, first) >= 0;
+        }
+        return new StronglyConnectedComponents<>(graph, component, memberStart, members, cyclic);
+    }
+
+    /**
+     * Returns the number of components.
+     *
+     * @return the number of components
+     */
+    public int getComponentCount() {
+        return cyclic.length;
+    }
+
+    /**
+     * Returns the component number of a vertex.
+     *
+     * @param vertex the vertex
+     * @return the component of the vertex, or -1 if it is not in the graph
+     */
+    public int componentOf(V vertex) {
+        int id = graph.idOf(vertex);
+        return id < 0 ? -1 : component[id];
+    }
+
+    /**
+     * Returns a read-only view of the members of a component.
+     *
+     * @param index the component number
+     * @return the vertices in the component
+     * @throws IndexOutOfBoundsException if there is no such component
+     */
+    public List<V> getComponent(int index) {
+        if (index < 0 || index >= getComponentCount()) {
+            throw new IndexOutOfBoundsException("Component: " + index);
+        }
+        return new Members(memberStart[index], memberStart[index + 1]);
+    }
+
+    /**
+     * Returns whether a component contains a cycle.
+     *
+     * @param index the component number
+     * @return true if the component has several vertices or a self-loop
+     * @throws IndexOutOfBoundsException if there is no such component
+     */
+    public boolean isCyclic(int index) {
+        if (index < 0 || index >= getComponentCount()) {
+            throw new IndexOutOfBoundsException("Component: " + index);
+        }
+        return cyclic[index];
+    }
+
+    /**
+     * Returns whether the graph contains any cycle.
+     *
+     * @return true if some component is cyclic
+     */
+    public boolean hasCycle() {
+        for (boolean c : cyclic) {
+            if (c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the members of every cyclic component, in component order.
+     *
+     * @return one list of vertices per cyclic component; empty if the graph is acyclic
+     */
+    public List<List<V>> getCycles() {
+        ArrayList<List<V>> cycles = new ArrayList<>();
+        for (int c = 0; c < cyclic.length; c++) {
+            if (cyclic[c]) {
+                cycles.add(getComponent(c));
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Returns a read-only view of all components in topological order of the condensed
+     * graph. Flattening it gives an order of every vertex in which each edge points
+     * forward, except edges inside a cyclic component.
+     *
+     * @return the components in topological order
+     */
+    public List<List<V>> getCondensedOrder() {
+        return new AbstractList<List<V>>() {
+            @Override
+            public List<V> get(int index) {
+                return getComponent(index);
+            }
+
+            @Override
+            public int size() {
+                return getComponentCount();
+            }
+        };
+    }
+
+    /**
+     * A read-only view of the members of one component.
+     */
+    private final class Members extends AbstractList<V> {
+        /**
+         * The first position of the component in {@code members}.
+         */
+        private final int from;
+
+        /**
+         * The position just past the component.
+         */
+        private final int to;
+
+        /**
+         * Constructs a view of {@code members[from, to)}.
+         *
+         * @param from the first position
+         * @param to the position just past the last
+         */
+        Members(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public V get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return graph.vertexAt(members[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Tests the components of a graph with two cycles and a self-loop, of random graphs
+     * against mutual reachability found by brute force, and of a long cycle that would
+     * overflow a recursive search.
+     *
+     * @param args 0 - optional number of random graphs
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        // A -> B -> C -> A is a cycle, D has a self-loop, E and F are acyclic
+        ThreeTenGraph<String> graph = new ThreeTenGraph<>();
+        for (String v : new String[] {"A", "B", "C", "D", "E", "F"}) {
+            graph.addVertex(v);
+        }
+        graph.addEdge(new Destination<>("B", 1), "A", "B");
+        graph.addEdge(new Destination<>("C", 1), "B", "C");
+        graph.addEdge(new Destination<>("A", 1), "C", "A");
+        graph.addEdge(new Destination<>("D", 1), "C", "D");
+        graph.addEdge(new Destination<>("D", 1), "D", "D");
+        graph.addEdge(new Destination<>("E", 1), "D", "E");
+        graph.addEdge(new Destination<>("E", 1), "F", "E");
+
+        StronglyConnectedComponents<String> scc = TopologicalSort.components(graph);
+        List<List<String>> cycles = scc.getCycles();
+        if (scc.getComponentCount() == 4 && scc.hasCycle() && cycles.size() == 2
+                && cycles.get(0).equals(Arrays.asList("A", "B", "C"))
+                && cycles.get(1).equals(Collections.singletonList("D"))) {
+            System.out.println("Yay 1: found the cycle and the self-loop");
+        }
+        if (!scc.isCyclic(scc.componentOf("E")) && !scc.isCyclic(scc.componentOf("F"))
+                && scc.componentOf("A") < scc.componentOf("D") && scc.componentOf("D") < scc.componentOf("E")
+                && scc.componentOf("F") < scc.componentOf("E") && scc.componentOf("missing") == -1) {
+            System.out.println("Yay 2: condensed order points every edge forward");
+        }
+
+        // Random graphs against mutual reachability
+        long seed = 2303;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = 1 + (int) (seed >>> 60);
+            ThreeTenGraph<Integer> random = new ThreeTenGraph<>();
+            for (int v = 0; v < n; v++) {
+                random.addVertex(v);
+            }
+            boolean[][] reaches = new boolean[n][n];
+            for (int from = 0; from < n; from++) {
+                reaches[from][from] = true;
+                for (int to = 0; to < n; to++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    if ((seed >>> 61) == 0) { // One chance in eight
+                        random.addEdge(new Destination<>(to, 1), from, to);
+                        reaches[from][to] = true;
+                    }
+                }
+            }
+            for (int mid = 0; mid < n; mid++) {
+                for (int from = 0; from < n; from++) {
+                    for (int to = 0; to < n; to++) {
+                        reaches[from][to] |= reaches[from][mid] && reaches[mid][to];
+                    }
+                }
+            }
+
+            StronglyConnectedComponents<Integer> found = TopologicalSort.components(random);
+            for (int from = 0; from < n; from++) {
+                int c = found.componentOf(from);
+                boolean cyclic = random.findEdge(from, from) != null;
+                for (int to = 0; to < n; to++) {
+                    boolean mutual = reaches[from][to] && reaches[to][from];
+                    cyclic |= mutual && to != from;
+                    if (mutual != (c == found.componentOf(to))
+                            || (random.findEdge(from, to) != null && c > found.componentOf(to))) {
+                        System.out.println("Trial " + trial + ": wrong component for " + from + " and " + to);
+                        return;
+                    }
+                }
+                if (found.isCyclic(c) != cyclic || !found.getComponent(c).contains(from)) {
+                    System.out.println("Trial " + trial + ": wrong members or cycle flag for " + from);
+                    return;
+                }
+            }
+        }
+        System.out.println("Yay 3: " + trials + " random graphs match brute-force reachability");
+
+        // One cycle through 100,000 vertices, far deeper than the call stack allows
+        int length = 100000;
+        ThreeTenGraph<Integer> ring = new ThreeTenGraph<>();
+        for (int v = 0; v < length; v++) {
+            ring.addVertex(v);
+        }
+        for (int v = 0; v < length; v++) {
+            ring.addEdge(new Destination<>((v + 1) % length, 1), v, (v + 1) % length);
+        }
+        StronglyConnectedComponents<Integer> deep = TopologicalSort.components(ring);
+        if (deep.getComponentCount() == 1 && deep.getComponent(0).size() == length && deep.isCyclic(0)) {
+            System.out.println("Yay 4: a " + length + "-vertex cycle is one component");
+        }
+    }
+}
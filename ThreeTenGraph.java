@@ -8,11 +8,22 @@ import edu.uci.ics.jung.graph.util.EdgeType;
 
 import org.apache.commons.collections15.Factory;
 
-//No other imports allowed
+//No other imports allowed beyond java.util
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 
@@ -22,6 +33,16 @@ import java.util.LinkedList;
 
 /**
  * Implementation of a directed graph using a min-heap structure for edge priorities.
+ *
+ * <p>Vertex and edge collections returned by queries are unmodifiable live views of
+ * the graph rather than copies: they reflect later mutations, and iterating one while
+ * the graph is being mutated throws {@code ConcurrentModificationException}. Copy a
+ * view (for example {@code new ArrayList<>(view)}) to keep it across mutations. The
+ * {@code forEach...} methods visit adjacent vertices without allocating at all.
+ *
+ * <p>Ordered successor and out-edge queries sort a vertex's out-edges on first use
+ * after they change and cache the result, so even read-only queries may write to the
+ * graph; share an instance between threads only under external synchronization.
  * 
  * @param <V> the type of vertices in the graph
  */
@@ -29,8 +50,54 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
     
     /**
      * The adjacency list of the graph, where each vertex maps to a min-heap of edges.
+     * The heaps are indexed, so locating or removing an edge in one is O(log d).
      */
-    private LinkedHashMap<V, MinHeap<Destination<V>>> adjHeap = new LinkedHashMap<>();
+    private LinkedHashMap<V, Queue<Destination<V>>> adjHeap = new LinkedHashMap<>();
+
+    /**
+     * The target index, where each vertex keeps its out-edges keyed by the id of their
+     * target, so duplicate checks and edge lookups are O(1) instead of a heap scan. It
+     * also caches the out-edges sorted by target for the ordered successor queries.
+     */
+    private LinkedHashMap<V, EdgeIndex<V>> outEdges = new LinkedHashMap<>();
+
+    /**
+     * The reverse adjacency index, where each vertex maps its predecessors to the edges
+     * arriving from them, in the order those edges were added.
+     */
+    private LinkedHashMap<V, LinkedHashMap<V, Destination<V>>> inEdges = new LinkedHashMap<>();
+
+    /**
+     * The dense int id of every vertex, assigned when the vertex is added.
+     */
+    private VertexIndex<V> vertexIds = new VertexIndex<>();
+
+    /**
+     * The source vertex of every edge in this graph. Together with the indexed heaps this
+     * locates any edge in O(1) and removes it in O(log d).
+     */
+    private HashMap<Destination<V>, V> edgeSources = new HashMap<>();
+
+    /**
+     * Creates the adjacency heap for each new vertex.
+     */
+    private final Supplier<? extends Queue<Destination<V>>> heapFactory;
+
+    /**
+     * The number of structural changes made to this graph, used to tell whether a
+     * cached snapshot or sort result is still current.
+     */
+    private long modCount = 0;
+
+    /**
+     * The snapshot returned by the last call to {@link #freeze()}, or null.
+     */
+    private FrozenGraph<V> frozen;
+
+    /**
+     * The value of {@code modCount} when {@code frozen} was built.
+     */
+    private long frozenModCount;
 	
     /**
      * Returns a view of all vertices in this graph.
@@ -39,21 +106,18 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @Override
     public Collection<V> getVertices() {
-        return new LinkedList<>(adjHeap.keySet());
+        return Collections.unmodifiableSet(adjHeap.keySet());
     }
 
     /**
-     * Returns a view of all edges in this graph.
+     * Returns a view of all edges in this graph, grouped by source in the order the
+     * sources were added.
      * 
      * @return a Collection view of all edges in this graph
      */
     @Override
     public Collection<Destination<V>> getEdges() {
-        LinkedList<Destination<V>> edges = new LinkedList<>();
-        for (MinHeap<Destination<V>> heap : adjHeap.values()) {
-            edges.addAll(heap);
-        }
-        return edges;
+        return new EdgeView();
     }
 
     /**
@@ -73,11 +137,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @Override
     public int getEdgeCount() {
-        int edgeCount = 0;
-        for (MinHeap<Destination<V>> heap : adjHeap.values()) {
-            edgeCount += heap.size();
-        }
-        return edgeCount;
+        return edgeSources.size();
     }
 
     /**
@@ -92,26 +152,33 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
     }
 
     /**
-     * Returns a Collection view of the successors of the specified vertex.
+     * Returns a Collection view of the successors of the specified vertex, in ascending order.
      * A successor is a vertex connected to the given vertex by an outgoing edge.
+     * The order is sorted once after the vertex's out-edges change and then reused.
      * 
      * @param vertex the vertex whose successors are to be returned
      * @return a Collection view of the successors of the specified vertex
      */
     @Override
     public Collection<V> getSuccessors(V vertex) {
-        if (!adjHeap.containsKey(vertex)) {
+        if (!outEdges.containsKey(vertex)) {
             return Collections.emptyList();
         }
+        return new SuccessorView(outEdges.get(vertex), false);
+    }
 
-        MinHeap<Destination<V>> heap = adjHeap.get(vertex);
-        LinkedList<V> successors = new LinkedList<>();
-        for (Destination<V> edge : heap) {
-            successors.add(edge.node);
+    /**
+     * Returns a view of the successors of the specified vertex in descending order,
+     * for traversals that push or prepend successors and want the smallest handled last.
+     *
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of the specified vertex, largest first
+     */
+    public Collection<V> getSuccessorsDescending(V vertex) {
+        if (!outEdges.containsKey(vertex)) {
+            return Collections.emptyList();
         }
-
-        Collections.sort(successors); // Ensure sorted order
-        return successors;
+        return new SuccessorView(outEdges.get(vertex), true);
     }
 
     /**
@@ -123,16 +190,10 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @Override
     public Collection<V> getPredecessors(V vertex) {
-        LinkedList<V> predecessors = new LinkedList<>();
-        for (V key : adjHeap.keySet()) {
-            MinHeap<Destination<V>> heap = adjHeap.get(key);
-            for (Destination<V> edge : heap) {
-                if (edge.node.equals(vertex)) {
-                    predecessors.add(key);
-                }
-            }
+        if (!inEdges.containsKey(vertex)) {
+            return Collections.emptySet();
         }
-        return predecessors;
+        return Collections.unmodifiableSet(inEdges.get(vertex).keySet());
     }
 
     /**
@@ -144,17 +205,8 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @Override
     public Destination<V> findEdge(V v1, V v2) {
-        if (!adjHeap.containsKey(v1)) {
-            return null;
-        }
-
-        MinHeap<Destination<V>> heap = adjHeap.get(v1);
-        for (Destination<V> edge : heap) {
-            if (edge.node.equals(v2)) {
-                return edge;
-            }
-        }
-        return null;
+        EdgeIndex<V> targets = outEdges.get(v1);
+        return targets == null ? null : targets.get(vertexIds.idOf(v2));
     }
 
     /**
@@ -165,13 +217,11 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @Override
     public Pair<V> getEndpoints(Destination<V> edge) {
-        for (V key : adjHeap.keySet()) {
-            MinHeap<Destination<V>> heap = adjHeap.get(key);
-            if (heap.contains(edge)) {
-                return new Pair<>(key, edge.node);
-            }
+        V source = edgeSources.get(edge);
+        if (source == null) {
+            return null;
         }
-        return null;
+        return new Pair<>(source, edge.node);
     }
 
     /**
@@ -190,7 +240,11 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
             return false;
         }
 
-        adjHeap.put(vertex, new MinHeap<>());
+        adjHeap.put(vertex, heapFactory.get());
+        outEdges.put(vertex, new EdgeIndex<>());
+        inEdges.put(vertex, new LinkedHashMap<>());
+        vertexIds.add(vertex);
+        modCount++;
         return true;
     }
 
@@ -201,33 +255,97 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @param v1 the source vertex
      * @param v2 the destination vertex
      * @return true if the edge was successfully added; false otherwise
-     * @throws IllegalArgumentException if any parameter is null
+     * @throws IllegalArgumentException if any parameter is null, or the source's heap
+     *                                  rejects the edge, as a {@link DestinationHeap}
+     *                                  rejects an edge held by another heap
      */
     @Override
     public boolean addEdge(Destination<V> e, V v1, V v2) {
         if (e == null || v1 == null || v2 == null) {
             throw new IllegalArgumentException("Null values not allowed");
         }
-        if (!adjHeap.containsKey(v1) || !adjHeap.containsKey(v2)) {
+        if (!adjHeap.containsKey(v1) || !adjHeap.containsKey(v2) || edgeSources.containsKey(e)) {
             return false;
         }
 
-        MinHeap<Destination<V>> heap = adjHeap.get(v1);
-
         // Check for duplicate edges
-        for (Destination<V> existingEdge : heap) {
-            if (existingEdge.node.equals(v2)) {
-                return false; // No parallel edges allowed
-            }
+        EdgeIndex<V> targets = outEdges.get(v1);
+        int target = vertexIds.idOf(v2);
+        if (targets.containsKey(target)) {
+            return false; // No parallel edges allowed
         }
 
         e.node = v2;
-        heap.offer(e);
+        adjHeap.get(v1).offer(e);
+        targets.put(target, e);
+        inEdges.get(v2).put(v1, e);
+        edgeSources.put(e, v1);
+        modCount++;
         return true;
     }
 
     /**
-     * Removes a vertex and all its incident edges from this graph.
+     * Adds a batch of edges leaving the specified vertex, each pointing at its own
+     * {@code node}. Edges to vertices not in this graph, and edges that would duplicate
+     * an existing or earlier edge, are skipped. The rest are inserted into the source's
+     * heap with one {@code addAll}. The default heaps and {@link DestinationHeap} rebuild
+     * bottom-up for a large batch, so loading d edges into an empty vertex costs O(d)
+     * instead of O(d log d); other heaps fall back to one offer per edge.
+     *
+     * @param v1    the source vertex
+     * @param edges the edges to add
+     * @return the number of edges added
+     * @throws IllegalArgumentException if any parameter, edge or edge node is null, or
+     *                                  the source's heap rejects an edge, as a
+     *                                  {@link DestinationHeap} rejects an edge held by
+     *                                  another heap; then no edge is added
+     */
+    public int addEdges(V v1, Collection<? extends Destination<V>> edges) {
+        if (v1 == null || edges == null) {
+            throw new IllegalArgumentException("Null values not allowed");
+        }
+        if (!adjHeap.containsKey(v1)) {
+            return 0;
+        }
+
+        for (Destination<V> e : edges) {
+            if (e == null || e.node == null) {
+                throw new IllegalArgumentException("Null values not allowed");
+            }
+        }
+
+        EdgeIndex<V> targets = outEdges.get(v1);
+        ArrayList<Destination<V>> accepted = new ArrayList<>(edges.size());
+        for (Destination<V> e : edges) {
+            int target = vertexIds.idOf(e.node);
+            if (target >= 0 && !edgeSources.containsKey(e) && !targets.containsKey(target)) {
+                targets.put(target, e); // No parallel edges allowed
+                accepted.add(e);
+            }
+        }
+
+        try {
+            adjHeap.get(v1).addAll(accepted);
+        } catch (IllegalArgumentException ex) {
+            for (Destination<V> e : accepted) {
+                targets.remove(vertexIds.idOf(e.node)); // The heap kept none of them
+            }
+            throw ex;
+        }
+        for (Destination<V> e : accepted) {
+            inEdges.get(e.node).put(v1, e);
+            edgeSources.put(e, v1);
+        }
+        if (!accepted.isEmpty()) {
+            modCount++;
+        }
+        return accepted.size();
+    }
+
+    /**
+     * Removes a vertex and all its incident edges from this graph. Only the vertex's
+     * out-edges and its predecessors' heaps are touched, so with indexed heaps this
+     * costs O(degree * log d) rather than a scan of every heap in the graph.
      * 
      * @param vertex the vertex to remove
      * @return true if the vertex was successfully removed; false otherwise
@@ -238,11 +356,24 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
             return false;
         }
 
-        adjHeap.remove(vertex);
-        for (V key : adjHeap.keySet()) {
-            MinHeap<Destination<V>> heap = adjHeap.get(key);
-            heap.removeIf(edge -> edge.node.equals(vertex));
+        int id = vertexIds.idOf(vertex);
+        for (Destination<V> edge : adjHeap.remove(vertex)) {
+            inEdges.get(edge.node).remove(vertex);
+            edgeSources.remove(edge);
+        }
+        outEdges.remove(vertex);
+        // Only the real predecessors hold edges into this vertex
+        LinkedHashMap<V, Destination<V>> preds = inEdges.remove(vertex);
+        for (V pred : preds.keySet()) {
+            Destination<V> edge = preds.get(pred);
+            edgeSources.remove(edge);
+            if (outEdges.containsKey(pred)) { // Skips a self-loop, already dropped above
+                adjHeap.get(pred).remove(edge);
+                outEdges.get(pred).remove(id);
+            }
         }
+        vertexIds.remove(vertex);
+        modCount++;
         return true;
     }
 
@@ -254,13 +385,397 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @Override
     public boolean removeEdge(Destination<V> edge) {
-        for (V key : adjHeap.keySet()) {
-            MinHeap<Destination<V>> heap = adjHeap.get(key);
-            if (heap.remove(edge)) {
-                return true;
+        V source = edgeSources.remove(edge);
+        if (source == null) {
+            return false;
+        }
+        adjHeap.get(source).remove(edge);
+        outEdges.get(source).remove(vertexIds.idOf(edge.node));
+        inEdges.get(edge.node).remove(source);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Changes the priority of an edge in place. With the default indexed heaps, and with
+     * {@code DestinationHeap}, the edge is re-sifted in O(log d); other heaps have the edge
+     * removed and offered again. Counts as a change to the graph, so snapshots and
+     * cached results built before the call are not reused.
+     *
+     * @param edge the edge whose priority is changed
+     * @param priority the new priority
+     * @return true if the priority was changed; false if the edge is not in this graph
+     */
+    @SuppressWarnings("unchecked")
+    public boolean updatePriority(Destination<V> edge, int priority) {
+        V source = edge == null ? null : edgeSources.get(edge);
+        if (source == null) {
+            return false;
+        }
+
+        Queue<Destination<V>> heap = adjHeap.get(source);
+        if (heap instanceof IndexedMinHeap) {
+            edge.priority = priority;
+            ((IndexedMinHeap<Destination<V>>) heap).updatePriority(edge);
+        } else if (heap instanceof DestinationHeap) {
+            edge.priority = priority;
+            ((DestinationHeap<V>) heap).updatePriority(edge);
+        } else {
+            heap.remove(edge); // Unknown heaps are re-sifted by reinsertion
+            edge.priority = priority;
+            heap.offer(edge);
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes a batch of edges. The edges are grouped by source and each source's heap
+     * is filtered once, so removing k edges from a heap of d costs O(d) rather than
+     * k separate O(log d) removals. Edges not in this graph are ignored.
+     *
+     * @param edges the edges to remove
+     * @return the number of edges removed
+     * @throws IllegalArgumentException if the collection is null
+     */
+    public int removeEdges(Collection<? extends Destination<V>> edges) {
+        if (edges == null) {
+            throw new IllegalArgumentException("Null values not allowed");
+        }
+
+        LinkedHashMap<V, HashSet<Destination<V>>> bySource = new LinkedHashMap<>();
+        for (Destination<V> edge : edges) {
+            V source = edge == null ? null : edgeSources.remove(edge);
+            if (source == null) {
+                continue;
             }
+            outEdges.get(source).remove(vertexIds.idOf(edge.node));
+            inEdges.get(edge.node).remove(source);
+            bySource.computeIfAbsent(source, k -> new HashSet<>()).add(edge);
+        }
+
+        int removed = 0;
+        for (V source : bySource.keySet()) {
+            HashSet<Destination<V>> doomed = bySource.get(source);
+            adjHeap.get(source).removeAll(doomed);
+            removed += doomed.size();
+        }
+        if (removed > 0) {
+            modCount++;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes a batch of vertices and all their incident edges. Each surviving
+     * predecessor's heap is filtered once, however many of its successors are removed.
+     * Vertices not in this graph are ignored.
+     *
+     * @param vertices the vertices to remove
+     * @return the number of vertices removed
+     * @throws IllegalArgumentException if the collection is null
+     */
+    public int removeVertices(Collection<? extends V> vertices) {
+        if (vertices == null) {
+            throw new IllegalArgumentException("Null values not allowed");
+        }
+
+        LinkedHashSet<V> doomed = new LinkedHashSet<>();
+        for (V vertex : vertices) {
+            if (vertex != null && adjHeap.containsKey(vertex)) {
+                doomed.add(vertex);
+            }
+        }
+
+        LinkedHashMap<V, HashSet<Destination<V>>> bySource = new LinkedHashMap<>();
+        for (V vertex : doomed) {
+            for (Destination<V> edge : adjHeap.get(vertex)) {
+                inEdges.get(edge.node).remove(vertex);
+                edgeSources.remove(edge);
+            }
+            for (V pred : inEdges.get(vertex).keySet()) {
+                if (doomed.contains(pred)) {
+                    continue; // Its whole heap is dropped below
+                }
+                Destination<V> edge = outEdges.get(pred).remove(vertexIds.idOf(vertex));
+                edgeSources.remove(edge);
+                bySource.computeIfAbsent(pred, k -> new HashSet<>()).add(edge);
+            }
+        }
+        for (V vertex : doomed) {
+            adjHeap.remove(vertex);
+            outEdges.remove(vertex);
+            inEdges.remove(vertex);
+            vertexIds.remove(vertex);
+        }
+        for (V source : bySource.keySet()) {
+            adjHeap.get(source).removeAll(bySource.get(source));
+        }
+
+        if (!doomed.isEmpty()) {
+            modCount++;
+        }
+        return doomed.size();
+    }
+
+    /**
+     * Starts a batch of staged changes to this graph, applied together by
+     * {@link GraphBatch#apply()}.
+     *
+     * @return an empty batch for this graph
+     */
+    public GraphBatch<V> batch() {
+        return new GraphBatch<>(this);
+    }
+
+    /**
+     * Returns the dense int id assigned to the specified vertex when it was added.
+     * Ids stay fixed while the vertex is in the graph; the id of a removed vertex is
+     * reused by the next vertex added.
+     *
+     * @param vertex the vertex to look up
+     * @return the id of the vertex, or -1 if it is not in this graph
+     */
+    public int idOf(V vertex) {
+        return vertexIds.idOf(vertex);
+    }
+
+    /**
+     * Returns the vertex with the specified id.
+     *
+     * @param id an id below {@link #getVertexIdBound()}
+     * @return the vertex, or null if no vertex currently has that id
+     */
+    public V vertexAt(int id) {
+        return vertexIds.vertexAt(id);
+    }
+
+    /**
+     * Returns an exclusive upper bound on vertex ids, for sizing id-indexed arrays.
+     *
+     * @return one more than the largest id in use or previously used
+     */
+    public int getVertexIdBound() {
+        return vertexIds.bound();
+    }
+
+    /**
+     * Returns the version of this graph, which changes whenever a vertex or edge is
+     * added or removed or an edge priority is changed with
+     * {@link #updatePriority(Destination, int)}. Results computed from the graph can be
+     * reused for as long as the version is unchanged. Writing
+     * {@link Destination#priority} directly does not change the version.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return modCount;
+    }
+
+    /**
+     * Returns an immutable compressed-sparse-row snapshot of this graph for read-heavy
+     * work. The snapshot is built in O(V + E) and reused until this graph next changes,
+     * including a priority change made with {@link #updatePriority(Destination, int)}.
+     *
+     * @return a snapshot of the current vertices and edges
+     */
+    public FrozenGraph<V> freeze() {
+        if (frozen == null || frozenModCount != modCount) {
+            frozen = new FrozenGraph<>(this);
+            frozenModCount = modCount;
+        }
+        return frozen;
+    }
+
+    /**
+     * An unmodifiable live view of two collections, one after the other.
+     *
+     * @param <T> the type of elements in the view
+     */
+    private static final class ConcatView<T> extends AbstractCollection<T> {
+        /**
+         * The collection iterated first.
+         */
+        private final Collection<T> first;
+
+        /**
+         * The collection iterated second.
+         */
+        private final Collection<T> second;
+
+        /**
+         * Constructs a view of two collections.
+         *
+         * @param first the collection iterated first
+         * @param second the collection iterated second
+         */
+        ConcatView(Collection<T> first, Collection<T> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            Iterator<T> a = first.iterator();
+            Iterator<T> b = second.iterator();
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return a.hasNext() || b.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return a.hasNext() ? a.next() : b.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return first.size() + second.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return first.contains(o) || second.contains(o);
+        }
+    }
+
+    /**
+     * An unmodifiable live view of every edge in the graph, read from the adjacency heaps.
+     */
+    private final class EdgeView extends AbstractCollection<Destination<V>> {
+        @Override
+        public Iterator<Destination<V>> iterator() {
+            Iterator<Queue<Destination<V>>> heaps = adjHeap.values().iterator();
+            long expectedModCount = modCount;
+            return new Iterator<Destination<V>>() {
+                /**
+                 * The edges of the source being visited.
+                 */
+                private Iterator<Destination<V>> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && heaps.hasNext()) {
+                        current = heaps.next().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Destination<V> next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return edgeSources.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return edgeSources.containsKey(o);
+        }
+    }
+
+    /**
+     * An unmodifiable live view of the successors of one vertex, sorted.
+     */
+    private final class SuccessorView extends AbstractCollection<V> {
+        /**
+         * The out-edges of the vertex.
+         */
+        private final EdgeIndex<V> targets;
+
+        /**
+         * Whether the largest successor comes first.
+         */
+        private final boolean descending;
+
+        /**
+         * Constructs a view of the targets of some out-edges.
+         *
+         * @param targets the out-edges of the vertex
+         * @param descending true to list the largest successor first
+         */
+        SuccessorView(EdgeIndex<V> targets, boolean descending) {
+            this.targets = targets;
+            this.descending = descending;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            Iterator<Destination<V>> edges = targets.sortedIterator(descending);
+            return new Iterator<V>() {
+                @Override
+                public boolean hasNext() {
+                    return edges.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    return edges.next().node;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return targets.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return targets.containsKey(vertexIds.idOf(o));
+        }
+    }
+
+    /**
+     * An unmodifiable live view of the out-edges of one vertex, by ascending target.
+     */
+    private final class OutEdgeView extends AbstractCollection<Destination<V>> {
+        /**
+         * The out-edges of the vertex.
+         */
+        private final EdgeIndex<V> targets;
+
+        /**
+         * Constructs a view of some out-edges.
+         *
+         * @param targets the out-edges of the vertex
+         */
+        OutEdgeView(EdgeIndex<V> targets) {
+            this.targets = targets;
+        }
+
+        @Override
+        public Iterator<Destination<V>> iterator() {
+            return targets.sortedIterator(false);
+        }
+
+        @Override
+        public int size() {
+            return targets.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Destination)) {
+                return false;
+            }
+            Destination<?> edge = (Destination<?>) o;
+            return targets.get(vertexIds.idOf(edge.node)) == edge;
         }
-        return false;
     }
 
     //********************************************************************************
@@ -383,6 +898,19 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
             System.out.println("Duplicate edge test is correct");
         }
 
+        // Test updatePriority
+        Destination<String> e4 = new Destination<>("G", 9);
+        graph.addEdge(e4, "X", "G");
+        long version = graph.getVersion();
+        graph.freeze();
+        if (graph.updatePriority(e4, 0) && graph.adjHeap.get("X").peek() == e4
+                && graph.getVersion() != version) {
+            FrozenGraph<String> frozen = graph.freeze();
+            if (frozen.priority(frozen.edgeBetween(frozen.idOf("X"), frozen.idOf("G"))) == 0) {
+                System.out.println("Priority update is correct");
+            }
+        }
+
         System.out.println("All tests completed!");
     }
 	
@@ -395,7 +923,26 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      */
     @SuppressWarnings("unchecked")
     public ThreeTenGraph() {
+        this(IndexedMinHeap::new);
+    }
+
+    /**
+     * Constructs an empty graph whose adjacency heaps are created by the given factory,
+     * for example {@code DestinationHeap::new} for primitive int priorities.
+     *
+     * @param heapFactory creates an empty, indexed heap of edges for each vertex
+     * @throws IllegalArgumentException if the factory is null
+     */
+    public ThreeTenGraph(Supplier<? extends Queue<Destination<V>>> heapFactory) {
+        if (heapFactory == null) {
+            throw new IllegalArgumentException("Heap factory cannot be null");
+        }
+        this.heapFactory = heapFactory;
         adjHeap = new LinkedHashMap<>();
+        outEdges = new LinkedHashMap<>();
+        inEdges = new LinkedHashMap<>();
+        vertexIds = new VertexIndex<>();
+        edgeSources = new HashMap<>();
     }
 
     /**
@@ -406,7 +953,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return true if the vertex and edge are incident, false otherwise
      */
     public boolean isIncident(V vertex, Destination<V> edge) {
-        return getIncidentEdges(vertex).contains(edge);
+        return isSource(vertex, edge) || isDest(vertex, edge);
     }
 
     /**
@@ -417,7 +964,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return true if v1 is a predecessor of v2, false otherwise
      */
     public boolean isPredecessor(V v1, V v2) {
-        return getPredecessors(v1).contains(v2);
+        return inEdges.containsKey(v1) && inEdges.get(v1).containsKey(v2);
     }
 
     /**
@@ -428,7 +975,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return true if v1 is a successor of v2, false otherwise
      */
     public boolean isSuccessor(V v1, V v2) {
-        return getSuccessors(v1).contains(v2);
+        return findEdge(v1, v2) != null;
     }
 
     /**
@@ -438,25 +985,63 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return a collection of incoming edges incident to the vertex
      */
     public Collection<Destination<V>> getInEdges(V vertex) {
-        LinkedList<Destination<V>> ret = new LinkedList<>();
-        for (V pred : getPredecessors(vertex)) {
-            ret.add(findEdge(pred, vertex));
+        if (!inEdges.containsKey(vertex)) {
+            return Collections.emptyList();
         }
-        return ret;
+        return Collections.unmodifiableCollection(inEdges.get(vertex).values());
     }
 
     /**
-     * Retrieves all outgoing edges incident to the specified vertex.
+     * Retrieves all outgoing edges incident to the specified vertex, by ascending target.
      *
      * @param vertex the vertex whose outgoing edges are to be retrieved
      * @return a collection of outgoing edges incident to the vertex
      */
     public Collection<Destination<V>> getOutEdges(V vertex) {
-        LinkedList<Destination<V>> ret = new LinkedList<>();
-        for (V succ : getSuccessors(vertex)) {
-            ret.add(findEdge(vertex, succ));
+        if (!outEdges.containsKey(vertex)) {
+            return Collections.emptyList();
+        }
+        return new OutEdgeView(outEdges.get(vertex));
+    }
+
+    /**
+     * Passes each successor of the specified vertex to the given action, in no
+     * particular order, without allocating. The graph must not be mutated by the action.
+     *
+     * @param vertex the vertex whose successors are to be visited
+     * @param action the action to perform on each successor
+     */
+    public void forEachSuccessor(V vertex, Consumer<? super V> action) {
+        if (outEdges.containsKey(vertex)) {
+            outEdges.get(vertex).forEachTarget(action);
+        }
+    }
+
+    /**
+     * Passes each predecessor of the specified vertex to the given action, in the order
+     * their edges were added, without allocating. The graph must not be mutated by the action.
+     *
+     * @param vertex the vertex whose predecessors are to be visited
+     * @param action the action to perform on each predecessor
+     */
+    public void forEachPredecessor(V vertex, Consumer<? super V> action) {
+        if (inEdges.containsKey(vertex)) {
+            inEdges.get(vertex).keySet().forEach(action);
+        }
+    }
+
+    /**
+     * Passes each outgoing edge of the specified vertex to the given action, in the
+     * order of {@link #getOutEdges(Comparable)}, without copying. The graph must not be
+     * mutated by the action.
+     *
+     * @param vertex the vertex whose outgoing edges are to be visited
+     * @param action the action to perform on each edge
+     */
+    public void forEachOutEdge(V vertex, Consumer<? super Destination<V>> action) {
+        if (outEdges.containsKey(vertex)) {
+            outEdges.get(vertex).forEachSorted(action);
         }
-        return ret;
     }
 
     /**
@@ -477,7 +1062,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return true if the edge is contained in the graph, false otherwise
      */
     public boolean containsEdge(Destination<V> edge) {
-        return (getEndpoints(edge) != null);
+        return edgeSources.containsKey(edge);
     }
 
     /**
@@ -487,7 +1072,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return the indegree of the vertex
      */
     public int inDegree(V vertex) {
-        return getInEdges(vertex).size();
+        return inEdges.containsKey(vertex) ? inEdges.get(vertex).size() : 0;
     }
 
     /**
@@ -497,7 +1082,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return the outdegree of the vertex
      */
     public int outDegree(V vertex) {
-        return getOutEdges(vertex).size();
+        return outEdges.containsKey(vertex) ? outEdges.get(vertex).size() : 0;
     }
 
     /**
@@ -520,7 +1105,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return the source vertex of the edge, or null if not applicable
      */
     public V getSource(Destination<V> directedEdge) {
-        return getEndpoints(directedEdge).getFirst();
+        return edgeSources.get(directedEdge);
     }
 
     /**
@@ -530,7 +1115,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return the destination vertex of the edge, or null if not applicable
      */
     public V getDest(Destination<V> directedEdge) {
-        return getEndpoints(directedEdge).getSecond();
+        return edgeSources.containsKey(directedEdge) ? directedEdge.node : null;
     }
 
     /**
@@ -581,10 +1166,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      *         or an empty collection if the vertex is not present
      */
     public Collection<Destination<V>> getIncidentEdges(V vertex) {
-        LinkedList<Destination<V>> ret = new LinkedList<>();
-        ret.addAll(getInEdges(vertex));
-        ret.addAll(getOutEdges(vertex));
-        return ret;
+        return new ConcatView<>(getInEdges(vertex), getOutEdges(vertex));
     }
 
     /**
@@ -596,14 +1178,10 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      *         or an empty collection if the vertex is not present
      */
     public Collection<V> getNeighbors(V vertex) {
-		LinkedList<V> ret = new LinkedList<>();
-		
-		Collection<V> fetch = getPredecessors(vertex);
-		if(fetch != null) ret.addAll(fetch);
-		fetch = getSuccessors(vertex);
-		if(fetch != null) ret.addAll(fetch);
-		
-		return ret;
+		if (!outEdges.containsKey(vertex)) {
+			return Collections.emptyList();
+		}
+		return new ConcatView<>(getPredecessors(vertex), getSuccessors(vertex));
 	}
     
     /**
@@ -619,10 +1197,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
 		Pair<V> p = getEndpoints(edge);
 		if(p == null) return null;
 		
-		LinkedList<V> ret = new LinkedList<>();
-		ret.add(p.getFirst());
-		ret.add(p.getSecond());
-		return ret;
+		return Arrays.asList(p.getFirst(), p.getSecond());
 	}
 
     /**
@@ -683,10 +1258,7 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
 			return null;
 		}
 		
-		LinkedList<Destination<V>> ret = new LinkedList<>();
-		ret.add(edge);
-		return ret;
-		
+		return Collections.singletonList(edge);
 	}
 	
     /**
@@ -697,7 +1269,8 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return true if the vertex is the source of the edge, false otherwise
      */
     public boolean isSource(V vertex, Destination<V> edge) {
-		return getSource(edge).equals(vertex);
+		V source = getSource(edge);
+		return source != null && source.equals(vertex);
 	}
     
     /**
@@ -708,7 +1281,8 @@ class ThreeTenGraph<V extends Comparable<V>> implements Graph<V, Destination<V>>
      * @return true if the vertex is the destination of the edge, false otherwise
      */
     public boolean isDest(V vertex, Destination<V> edge) {
-		return getDest(edge).equals(vertex);
+		V dest = getDest(edge);
+		return dest != null && dest.equals(vertex);
 	}
     
     /**
@@ -0,0 +1,443 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A topological order of a {@link FrozenGraph} grouped into levels, computed in parallel
+ * on a {@link ForkJoinPool}. Create one with {@link TopologicalSort#levelSort}.
+ *
+ * <p>Level 0 holds the vertices with no predecessors, and every other vertex sits one
+ * level below its deepest predecessor, so a vertex's level is the earliest step (for
+ * example the earliest semester) at which it can be placed. Listing the levels in turn
+ * gives a valid topological order. Within a level, vertices are listed by id, that is
+ * in the order they were added to the graph, so the result does not depend on thread
+ * scheduling.
+ *
+ * <p>Each level is processed as one wavefront: its vertices are split into chunks that
+ * run as fork/join tasks, decrement shared atomic in-degree counters, and collect the
+ * vertices they make ready in per-task buffers. The buffers form the next level. The
+ * work is O(V + E) plus sorting each level, spread over the pool's threads.
+ *
+ * @param <V> the type of vertices in the graph
+ */
+class TopologicalLevels<V extends Comparable<V>> {
+    /**
+     * The number of frontier vertices processed sequentially by one task.
+     */
+    private static final int CHUNK = 1024;
+
+    /**
+     * The graph the levels were computed for.
+     */
+    private final FrozenGraph<V> graph;
+
+    /**
+     * The vertex ids in topological order, level after level.
+     */
+    private final int[] order;
+
+    /**
+     * The position in {@code order} where each level starts, plus a final end position.
+     */
+    private final int[] levelStart;
+
+    /**
+     * The level of each vertex id.
+     */
+    private final int[] level;
+
+    /**
+     * Constructs the result of a level sort.
+     *
+     * @param graph the graph that was sorted
+     * @param order the ids in topological order
+     * @param levelStart the start of each level in {@code order}, plus the end
+     * @param level the level of each id
+     */
+    private TopologicalLevels(FrozenGraph<V> graph, int[] order, int[] levelStart, int[] level) {
+        this.graph = graph;
+        this.order = order;
+        this.levelStart = levelStart;
+        this.level = level;
+    }
+
+    /**
+     * Computes the levels of a frozen graph on the given pool.
+     *
+     * @param <V> the type of vertices in the graph
+     * @param graph the graph to sort
+     * @param pool the pool that runs each level's tasks
+     * @return the levels of the graph
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    static <V extends Comparable<V>> TopologicalLevels<V> compute(FrozenGraph<V> graph, ForkJoinPool pool) {
+        int n = graph.getVertexCount();
+        int[] order = new int[n];
+        int[] level = new int[n];
+        AtomicIntegerArray inDegree = new AtomicIntegerArray(n);
+
+        int end = 0;
+        for (int id = 0; id < n; id++) {
+            int degree = graph.inEnd(id) - graph.inStart(id);
+            if (degree == 0) {
+                order[end++] = id;
+            } else {
+                inDegree.set(id, degree);
+            }
+        }
+
+        int[] starts = new int[n + 1];
+        int levels = 0;
+        int start = 0;
+        while (start < end) {
+            starts[levels] = start;
+            for (int pos = start; pos < end; pos++) {
+                level[order[pos]] = levels;
+            }
+            levels++;
+
+            Wavefront wave = new Wavefront(graph, inDegree, order, start, end);
+            if (end - start <= CHUNK) {
+                wave.compute(); // Too small to be worth handing to the pool
+            } else {
+                pool.invoke(wave);
+            }
+            start = end;
+            end = wave.drainInto(order, end);
+            Arrays.parallelSort(order, start, end);
+        }
+        starts[levels] = end;
+
+        if (end < n) {
+            throw new IllegalArgumentException("Graph contains a cycle.");
+        }
+        return new TopologicalLevels<>(graph, order, Arrays.copyOf(starts, levels + 1), level);
+    }
+
+    /**
+     * Returns a read-only view of all vertices in topological order, level after level.
+     *
+     * @return the vertices in topological order
+     */
+    public List<V> getOrder() {
+        return new Range(0, order.length);
+    }
+
+    /**
+     * Returns the number of levels, which is one more than the length of the longest
+     * path in the graph, or 0 for an empty graph.
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levelStart.length - 1;
+    }
+
+    /**
+     * Returns a read-only view of the vertices on one level, in the order they were
+     * added to the graph.
+     *
+     * @param index the level, from 0
+     * @return the vertices on that level
+     * @throws IndexOutOfBoundsException if there is no such level
+     */
+    public List<V> getLevel(int index) {
+        if (index < 0 || index >= getLevelCount()) {
+            throw new IndexOutOfBoundsException("Level: " + index);
+        }
+        return new Range(levelStart[index], levelStart[index + 1]);
+    }
+
+    /**
+     * Returns the level of a vertex: 0 if it has no predecessors, otherwise one more
+     * than the level of its deepest predecessor.
+     *
+     * @param vertex the vertex
+     * @return the level of the vertex, or -1 if it is not in the graph
+     */
+    public int levelOf(V vertex) {
+        int id = graph.idOf(vertex);
+        return id < 0 ? -1 : level[id];
+    }
+
+    /**
+     * The tasks for one level. Each leaf task processes a chunk of the level, releasing
+     * successors whose in-degree drops to zero into its own buffer.
+     */
+    private static final class Wavefront extends RecursiveAction {
+        /**
+         * The serialization version, required of every {@code RecursiveAction}.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The graph being sorted.
+         */
+        private final FrozenGraph<?> graph;
+
+        /**
+         * The remaining in-degree of every id, shared by all tasks.
+         */
+        private final AtomicIntegerArray inDegree;
+
+        /**
+         * The ids of the level, in {@code frontier[from, to)}.
+         */
+        private final int[] frontier;
+
+        /**
+         * The first position of the level.
+         */
+        private final int from;
+
+        /**
+         * The position just past the level.
+         */
+        private final int to;
+
+        /**
+         * The ids released by each chunk, indexed by chunk.
+         */
+        private final int[][] released;
+
+        /**
+         * The number of ids released by each chunk.
+         */
+        private final int[] releasedCount;
+
+        /**
+         * The first chunk this task covers.
+         */
+        private final int firstChunk;
+
+        /**
+         * The chunk just past the last this task covers.
+         */
+        private final int lastChunk;
+
+        /**
+         * Constructs the root task for the level {@code frontier[from, to)}.
+         *
+         * @param graph the graph being sorted
+         * @param inDegree the remaining in-degree of every id
+         * @param frontier the array holding the level
+         * @param from the first position of the level
+         * @param to the position just past the level
+         */
+        Wavefront(FrozenGraph<?> graph, AtomicIntegerArray inDegree, int[] frontier, int from, int to) {
+            this(graph, inDegree, frontier, from, to, new int[chunks(from, to)][],
+                new int[chunks(from, to)], 0, chunks(from, to));
+        }
+
+        /**
+         * Constructs a task covering chunks {@code [firstChunk, lastChunk)} of a level.
+         *
+         * @param graph the graph being sorted
+         * @param inDegree the remaining in-degree of every id
+         * @param frontier the array holding the level
+         * @param from the first position of the level
+         * @param to the position just past the level
+         * @param released the per-chunk buffers
+         * @param releasedCount the per-chunk buffer sizes
+         * @param firstChunk the first chunk to cover
+         * @param lastChunk the chunk just past the last to cover
+         */
+        private Wavefront(FrozenGraph<?> graph, AtomicIntegerArray inDegree, int[] frontier, int from,
+                int to, int[][] released, int[] releasedCount, int firstChunk, int lastChunk) {
+            this.graph = graph;
+            this.inDegree = inDegree;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.released = released;
+            this.releasedCount = releasedCount;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        /**
+         * Returns the number of chunks a level is split into.
+         *
+         * @param from the first position of the level
+         * @param to the position just past the level
+         * @return the number of chunks
+         */
+        private static int chunks(int from, int to) {
+            return (to - from + CHUNK - 1) / CHUNK;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastChunk - firstChunk > 1) {
+                int mid = (firstChunk + lastChunk) >>> 1;
+                invokeAll(
+                    new Wavefront(graph, inDegree, frontier, from, to, released, releasedCount, firstChunk, mid),
+                    new Wavefront(graph, inDegree, frontier, from, to, released, releasedCount, mid, lastChunk));
+                return;
+            }
+            for (int chunk = firstChunk; chunk < lastChunk; chunk++) {
+                int[] buffer = new int[16];
+                int count = 0;
+                int end = Math.min(from + (chunk + 1) * CHUNK, to);
+                for (int pos = from + chunk * CHUNK; pos < end; pos++) {
+                    int current = frontier[pos];
+                    for (int edge = graph.outStart(current); edge < graph.outEnd(current); edge++) {
+                        int neighbor = graph.target(edge);
+                        if (inDegree.decrementAndGet(neighbor) == 0) {
+                            if (count == buffer.length) {
+                                buffer = Arrays.copyOf(buffer, count * 2);
+                            }
+                            buffer[count++] = neighbor;
+                        }
+                    }
+                }
+                released[chunk] = buffer;
+                releasedCount[chunk] = count;
+            }
+        }
+
+        /**
+         * Copies the ids released by every chunk into an array, in chunk order.
+         *
+         * @param dest the array to copy into
+         * @param pos the first position to write
+         * @return the position just past the last id written
+         */
+        int drainInto(int[] dest, int pos) {
+            for (int chunk = 0; chunk < released.length; chunk++) {
+                System.arraycopy(released[chunk], 0, dest, pos, releasedCount[chunk]);
+                pos += releasedCount[chunk];
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * A read-only view of a range of the topological order as vertices.
+     */
+    private final class Range extends AbstractList<V> {
+        /**
+         * The first position of the range.
+         */
+        private final int from;
+
+        /**
+         * The position just past the range.
+         */
+        private final int to;
+
+        /**
+         * Constructs a view of {@code order[from, to)}.
+         *
+         * @param from the first position
+         * @param to the position just past the last
+         */
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public V get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return graph.vertexAt(order[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            @SuppressWarnings("unchecked")
+            int id = o == null ? -1 : graph.idOf((V) o);
+            if (id < 0) {
+                return false;
+            }
+            int lvl = level[id];
+            return lvl < getLevelCount() && levelStart[lvl] >= from && levelStart[lvl + 1] <= to;
+        }
+    }
+
+    /**
+     * Tests levels of random DAGs, some wide enough to be split across the pool, against
+     * levels computed sequentially, and checks that a cycle is rejected.
+     *
+     * @param args 0 - optional number of random graphs
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        long seed = 1903;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            boolean wide = trial % 8 == 7;
+            int n = wide ? 20000 : 1 + (int) (seed >>> 56);
+
+            // Edges only go forward in a random ranking of the vertices, so it is a DAG
+            int[] byRank = new int[n];
+            for (int i = 0; i < n; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                int j = (int) ((seed >>> 33) % (i + 1));
+                byRank[i] = byRank[j];
+                byRank[j] = i;
+            }
+            ThreeTenGraph<Integer> graph = new ThreeTenGraph<>();
+            for (int v = 0; v < n; v++) {
+                graph.addVertex(v);
+            }
+            int[] expected = new int[n];
+            for (int r = 0; r < n; r++) {
+                int from = byRank[r];
+                for (int k = 0; k < 3 && r + 1 < n; k++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    int to = byRank[r + 1 + (int) ((seed >>> 33) % Math.min(n - r - 1, wide ? 5000 : 8))];
+                    if (graph.addEdge(new Destination<>(to, 1), from, to)) {
+                        expected[to] = Math.max(expected[to], expected[from] + 1);
+                    }
+                }
+            }
+
+            TopologicalLevels<Integer> levels = TopologicalSort.levelSort(graph.freeze(), pool);
+            int count = 0;
+            for (int v = 0; v < n; v++) {
+                count = Math.max(count, expected[v] + 1);
+            }
+            boolean same = levels.getLevelCount() == count && levels.getOrder().size() == n;
+            int pos = 0;
+            for (int l = 0; same && l < count; l++) {
+                List<Integer> members = levels.getLevel(l);
+                for (int i = 0; same && i < members.size(); i++) {
+                    int v = members.get(i);
+                    same = expected[v] == l && levels.levelOf(v) == l && levels.getOrder().get(pos++) == v
+                            && (i == 0 || members.get(i - 1) < v);
+                }
+            }
+            if (!same || pos != n) {
+                System.out.println("Trial " + trial + ": levels do not match the sequential levels");
+                return;
+            }
+        }
+        System.out.println("Yay 1: " + trials + " random DAGs match levels computed sequentially");
+
+        ThreeTenGraph<String> graph = new ThreeTenGraph<>();
+        for (String v : new String[] {"A", "B", "C"}) {
+            graph.addVertex(v);
+        }
+        graph.addEdge(new Destination<>("B", 1), "A", "B");
+        graph.addEdge(new Destination<>("C", 1), "B", "C");
+        graph.addEdge(new Destination<>("B", 1), "C", "B");
+        try {
+            TopologicalSort.levelSort(graph.freeze(), pool);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Yay 2: cyclic graph rejected");
+        }
+        pool.shutdown();
+    }
+}
@@ -1,17 +1,35 @@
 import java.io.*;
 import java.util.Scanner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides methods for constructing a graph from a file
  * and performing a topological sort on a directed acyclic graph (DAG).
  */
 class TopologicalSort {
-
+    /**
+     * The shared cache used by {@link #cachedSort}.
+     */
+    private static final TopologicalSortCache CACHE = new TopologicalSortCache(256);
 
     /**
      * Constructs a {@link ThreeTenGraph} from the specified file.
@@ -31,23 +49,23 @@ class TopologicalSort {
     public static ThreeTenGraph<String> getGraph(String filename) throws IOException {
         ThreeTenGraph<String> graph = new ThreeTenGraph<>();
 
+        // Stage everything so each adjacency heap is built in one bulk insertion
+        GraphBatch<String> batch = graph.batch();
         try (Scanner r = new Scanner(new File(filename))) {
             int numNodes = Integer.parseInt(r.nextLine());
             for (int i = 0; i < numNodes; i++) {
                 String nodeName = r.nextLine().trim();
-                graph.addVertex(nodeName);
+                batch.addVertex(nodeName);
             }
 
             int numEdges = Integer.parseInt(r.nextLine());
             for (int i = 0; i < numEdges; i++) {
                 String[] fromToPriority = r.nextLine().trim().split(",");
-                graph.addEdge(
-                    new Destination<>(fromToPriority[1], Integer.parseInt(fromToPriority[2])),
-                    fromToPriority[0],
-                    fromToPriority[1]
-                );
+                batch.addEdge(new Destination<>(null, Integer.parseInt(fromToPriority[2])),
+                    fromToPriority[0], fromToPriority[1]);
             }
         }
+        batch.apply();
 
         return graph;
     }
@@ -55,7 +73,8 @@ class TopologicalSort {
     /**
      * Performs a topological sort on the given graph, starting from the specified node.
      *
-     * <p>The sort respects edge priorities by visiting lower-priority edges first.
+     * <p>Successors are visited in ascending vertex order. Use {@link #prioritySort}
+     * for an order driven by edge priorities.
      * If the graph contains a cycle, this method will throw an exception.
      *
      * @param <T>       the type of the vertices in the graph
@@ -75,77 +94,858 @@ class TopologicalSort {
             throw new IllegalArgumentException("Graph does not contain starting node");
         }
 
-        // Sets to track started and finished nodes
-        HashSet<T> started = new HashSet<>();
-        HashSet<T> finished = new HashSet<>();
+        // Sort the graph's int snapshot, which is cached until the graph changes
+        return topologicalSort(graph.freeze(), startNode);
+    }
+
+    /**
+     * Performs the same sort as {@link #topologicalSort(ThreeTenGraph, Comparable)},
+     * reusing the result of an earlier call for as long as the graph is unchanged.
+     * Results are kept in a shared cache of the 256 most recently used sorts.
+     *
+     * @param <T>       the type of the vertices in the graph
+     * @param graph     the {@link ThreeTenGraph} to sort
+     * @param startNode the node to begin the sorting
+     * @return an unmodifiable list of nodes in topological order
+     * @throws IllegalArgumentException if the graph is null, the startNode is null,
+     *                                  the startNode is not in the graph, or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> List<T> cachedSort(ThreeTenGraph<T> graph, T startNode) {
+        return CACHE.topologicalSort(graph, startNode);
+    }
+
+    /**
+     * Returns the shared cache used by {@link #cachedSort}, for reading its metrics.
+     *
+     * @return the shared sort cache
+     */
+    public static TopologicalSortCache getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Performs a topological sort on a frozen snapshot, starting from the specified node.
+     * Vertices are tracked by their dense int ids in bit sets, and only translated back
+     * to vertices when they are added to the result.
+     *
+     * <p>When the start node's traversal finishes, the sort restarts from the earliest
+     * added vertex that has not been finished yet.
+     *
+     * @param <T>       the type of the vertices in the graph
+     * @param graph     the {@link FrozenGraph} to sort
+     * @param startNode the node to begin the sorting
+     * @return a {@link LinkedList} of nodes in topological order
+     * @throws IllegalArgumentException if the graph is null, the startNode is null,
+     *                                  the startNode is not in the graph, or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> LinkedList<T> topologicalSort(FrozenGraph<T> graph, T startNode) {
+        if (graph == null || startNode == null) {
+            throw new IllegalArgumentException("Graph or starting node cannot be null");
+        }
+
+        int start = graph.idOf(startNode);
+        if (start < 0) {
+            throw new IllegalArgumentException("Graph does not contain starting node");
+        }
 
-        // Stack for the sorted order
+        int n = graph.getVertexCount();
+        BitSet started = new BitSet(n);
+        BitSet finished = new BitSet(n);
         LinkedList<T> sortedOrder = new LinkedList<>();
 
-        boolean dfsDone = false;
+        // Each vertex is on the stack at most once, so the DFS needs no more than n frames
+        int[] stack = new int[n];
+        int[] edgeCursor = new int[n];
 
-        while (!dfsDone) {
-            // Visit the start node
-            if (!visit(graph, startNode, started, finished, sortedOrder)) {
+        // Every id before the cursor is finished, so restarts never rescan from 0
+        int cursor = 0;
+        while (start >= 0) {
+            if (!visit(graph, start, started, finished, sortedOrder, stack, edgeCursor)) {
                 throw new IllegalArgumentException("Graph contains a cycle.");
             }
-
-            // Check if all nodes have been visited
-            dfsDone = true;
-            for (T v : graph.getVertices()) {
-                if (!finished.contains(v)) {
-                    startNode = v;
-                    dfsDone = false;
-                    break;
-                }
-            }
+            cursor = finished.nextClearBit(cursor);
+            start = cursor < n ? cursor : -1;
         }
 
         return sortedOrder;
     }
 
     /**
-     * Visits a node in the graph recursively using depth-first traversal.
+     * Visits a vertex id of a frozen graph and everything reachable from it using an
+     * iterative depth-first traversal, so deep chains cannot overflow the call stack.
+     * Successors are taken from the largest down, so the smallest is prepended last.
      *
-     * <p>This method helps identify cycles and maintain the sorted order of nodes
-     * in a topological sort.
-     *
-     * @param graph        the {@link ThreeTenGraph} to traverse
-     * @param currentNode         the node being visited
-     * @param started      the set of nodes that have been started but not finished
-     * @param finished     the set of nodes that have been fully processed
+     * @param graph        the {@link FrozenGraph} to traverse
+     * @param root         the id of the vertex to start from
+     * @param started      the ids that have been started
+     * @param finished     the ids that have been fully processed
      * @param sortedOrder  the resulting topological order
+     * @param stack        the ids on the current DFS path, one slot per vertex
+     * @param edgeCursor   for each stack frame, the next out-edge position to examine
      * @param <T>          the type of the vertices in the graph
-     * @return true if the node is processed successfully, false if a cycle is detected
+     * @return true if the traversal finished, false if a cycle is detected
      */
     private static <T extends Comparable<T>> boolean visit(
-            ThreeTenGraph<T> graph, T currentNode, HashSet<T> started,
-            HashSet<T> finished, LinkedList<T> sortedOrder) {
-        started.add(currentNode);
-
-        // Get neighbors in sorted reverse order
-        LinkedList<T> revNeighbors = new LinkedList<>(graph.getSuccessors(currentNode));
-        Collections.reverse(revNeighbors);
-
-        // Visit each neighbor
-        for (T neighbor : revNeighbors) {
-            // Detect cycle
-            if (started.contains(neighbor) && !finished.contains(neighbor)) {
+            FrozenGraph<T> graph, int root, BitSet started, BitSet finished,
+            LinkedList<T> sortedOrder, int[] stack, int[] edgeCursor) {
+        int depth = 0;
+        stack[0] = root;
+        edgeCursor[0] = graph.outEnd(root) - 1;
+        started.set(root);
+
+        while (depth >= 0) {
+            int current = stack[depth];
+            int pos = edgeCursor[depth];
+            if (pos < graph.outStart(current)) {
+                finished.set(current);
+                sortedOrder.addFirst(graph.vertexAt(current));
+                depth--;
+                continue;
+            }
+
+            edgeCursor[depth] = pos - 1;
+            int neighbor = graph.target(pos);
+            if (!started.get(neighbor)) {
+                started.set(neighbor);
+                stack[++depth] = neighbor;
+                edgeCursor[depth] = graph.outEnd(neighbor) - 1;
+            } else if (!finished.get(neighbor)) {
                 return false;
             }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the whole graph with Kahn's algorithm, releasing ready vertices in order of
+     * edge priority. See {@link #prioritySort(FrozenGraph)}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to sort
+     * @return a {@link LinkedList} of all nodes in topological order
+     * @throws IllegalArgumentException if the graph is null or contains a cycle
+     */
+    public static <T extends Comparable<T>> LinkedList<T> prioritySort(ThreeTenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return prioritySort(graph.freeze());
+    }
+
+    /**
+     * Sorts the whole graph with Kahn's algorithm, releasing ready vertices in the order
+     * given by a comparator. See {@link #prioritySort(FrozenGraph, Comparator)}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to sort
+     * @param order the order in which ready vertices are released
+     * @return a {@link LinkedList} of all nodes in topological order
+     * @throws IllegalArgumentException if any parameter is null or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> LinkedList<T> prioritySort(
+            ThreeTenGraph<T> graph, Comparator<? super T> order) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return prioritySort(graph.freeze(), order);
+    }
+
+    /**
+     * Sorts the whole graph with Kahn's algorithm. A vertex becomes ready once all its
+     * predecessors are placed, and among the ready vertices the one whose last incoming
+     * edge has the lowest {@link Destination#priority} is placed next. Vertices with no
+     * predecessors come before any released through an edge, and ties are broken by the
+     * vertices' natural order, so the result is deterministic.
+     *
+     * <p>Runs in O((V + E) log V) without recursion.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to sort
+     * @return a {@link LinkedList} of all nodes in topological order
+     * @throws IllegalArgumentException if the graph is null or contains a cycle
+     */
+    public static <T extends Comparable<T>> LinkedList<T> prioritySort(FrozenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return kahn(graph, Comparator.naturalOrder(), true);
+    }
+
+    /**
+     * Sorts the whole graph with Kahn's algorithm. A vertex becomes ready once all its
+     * predecessors are placed, and the ready vertex that comes first in the given order
+     * is placed next. Vertices the comparator considers equal are placed in the order
+     * they were added to the graph.
+     *
+     * <p>Runs in O((V + E) log V) without recursion.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to sort
+     * @param order the order in which ready vertices are released
+     * @return a {@link LinkedList} of all nodes in topological order
+     * @throws IllegalArgumentException if any parameter is null or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> LinkedList<T> prioritySort(
+            FrozenGraph<T> graph, Comparator<? super T> order) {
+        if (graph == null || order == null) {
+            throw new IllegalArgumentException("Graph or order cannot be null");
+        }
+        return kahn(graph, order, false);
+    }
+
+    /**
+     * Sorts the whole graph into levels in parallel on the common fork/join pool.
+     * See {@link TopologicalLevels}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to sort
+     * @return the topological order of the graph and the level of each vertex
+     * @throws IllegalArgumentException if the graph is null or contains a cycle
+     */
+    public static <T extends Comparable<T>> TopologicalLevels<T> levelSort(ThreeTenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return levelSort(graph.freeze(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts the whole graph into levels, processing each level as a wavefront of
+     * fork/join tasks on the given pool. A vertex's level is the earliest step at which
+     * it can be placed, and the levels in turn form a valid topological order.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to sort
+     * @param pool  the pool that runs each level's tasks
+     * @return the topological order of the graph and the level of each vertex
+     * @throws IllegalArgumentException if any parameter is null or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> TopologicalLevels<T> levelSort(FrozenGraph<T> graph, ForkJoinPool pool) {
+        if (graph == null || pool == null) {
+            throw new IllegalArgumentException("Graph or pool cannot be null");
+        }
+        return TopologicalLevels.compute(graph, pool);
+    }
+
+    /**
+     * Finds the strongly connected components of the graph, reporting every cycle in
+     * one O(V + E) pass. See {@link StronglyConnectedComponents}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to search
+     * @return the components of the graph
+     * @throws IllegalArgumentException if the graph is null
+     */
+    public static <T extends Comparable<T>> StronglyConnectedComponents<T> components(ThreeTenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return components(graph.freeze());
+    }
+
+    /**
+     * Finds the strongly connected components of a frozen graph, reporting every cycle
+     * in one O(V + E) pass. See {@link StronglyConnectedComponents}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to search
+     * @return the components of the graph
+     * @throws IllegalArgumentException if the graph is null
+     */
+    public static <T extends Comparable<T>> StronglyConnectedComponents<T> components(FrozenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return StronglyConnectedComponents.compute(graph);
+    }
+
+    /**
+     * Sorts the graph even if it has cycles, by collapsing each strongly connected
+     * component to one step. Every edge between different components points forward;
+     * the members of a cycle are listed together in one component.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to sort
+     * @return the components of the graph in topological order
+     * @throws IllegalArgumentException if the graph is null
+     */
+    public static <T extends Comparable<T>> List<List<T>> condensedSort(ThreeTenGraph<T> graph) {
+        return components(graph).getCondensedOrder();
+    }
+
+    /**
+     * Plans the whole graph, treating edge priorities as durations: every vertex
+     * without predecessors starts at time 0. See {@link CriticalPath}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to plan
+     * @return the earliest and latest starts, slack and a critical path of the graph
+     * @throws IllegalArgumentException if the graph is null or contains a cycle
+     */
+    public static <T extends Comparable<T>> CriticalPath<T> criticalPath(ThreeTenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        FrozenGraph<T> frozen = graph.freeze();
+        return CriticalPath.compute(frozen, CriticalPath.topologicalIds(frozen), -1);
+    }
+
+    /**
+     * Plans the vertices reachable from each of several start vertices, in parallel on
+     * the common fork/join pool. See {@link #criticalPaths(FrozenGraph, Collection, ForkJoinPool)}.
+     *
+     * @param <T>    the type of the vertices in the graph
+     * @param graph  the {@link ThreeTenGraph} to plan
+     * @param starts the start vertices
+     * @return the plan for each start vertex, in the order the starts were given
+     * @throws IllegalArgumentException if any parameter is null, a start vertex is not in
+     *                                  the graph, or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> Map<T, CriticalPath<T>> criticalPaths(
+            ThreeTenGraph<T> graph, Collection<? extends T> starts) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return criticalPaths(graph.freeze(), starts, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plans the vertices reachable from each of several start vertices, in parallel on
+     * the given pool. The topological order is computed once and shared by every plan.
+     *
+     * @param <T>    the type of the vertices in the graph
+     * @param graph  the {@link FrozenGraph} to plan
+     * @param starts the start vertices
+     * @param pool   the pool that computes the plans
+     * @return the plan for each start vertex, in the order the starts were given
+     * @throws IllegalArgumentException if any parameter is null, a start vertex is not in
+     *                                  the graph, or the graph contains a cycle
+     */
+    public static <T extends Comparable<T>> Map<T, CriticalPath<T>> criticalPaths(
+            FrozenGraph<T> graph, Collection<? extends T> starts, ForkJoinPool pool) {
+        if (graph == null || starts == null || pool == null) {
+            throw new IllegalArgumentException("Graph, starts or pool cannot be null");
+        }
+        for (T start : starts) {
+            if (start == null || graph.idOf(start) < 0) {
+                throw new IllegalArgumentException("Graph does not contain starting node");
+            }
+        }
+
+        int[] order = CriticalPath.topologicalIds(graph);
+        ArrayList<Callable<CriticalPath<T>>> plans = new ArrayList<>();
+        for (T start : starts) {
+            int id = graph.idOf(start);
+            plans.add(() -> CriticalPath.compute(graph, order, id));
+        }
+
+        LinkedHashMap<T, CriticalPath<T>> result = new LinkedHashMap<>();
+        Iterator<? extends T> it = starts.iterator();
+        try {
+            for (Future<CriticalPath<T>> plan : pool.invokeAll(plans)) {
+                result.put(it.next(), plan.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Planning failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Planning was interrupted", e);
+        }
+        return result;
+    }
+
+    /**
+     * Streams the order of {@link #prioritySort(FrozenGraph)} from the graph's current
+     * snapshot. See {@link #priorityIterator(FrozenGraph)}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link ThreeTenGraph} to sort
+     * @return a sequential stream of all nodes in topological order
+     * @throws IllegalArgumentException if the graph is null, or when the stream
+     *                                  reaches a cycle
+     */
+    public static <T extends Comparable<T>> Stream<T> priorityStream(ThreeTenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return priorityStream(graph.freeze());
+    }
 
-            // Visit unvisited neighbors
-            if (!started.contains(neighbor)) {
-                if (!visit(graph, neighbor, started, finished, sortedOrder)) {
-                    return false;
+    /**
+     * Streams the order of {@link #prioritySort(FrozenGraph)}. See
+     * {@link #priorityIterator(FrozenGraph)}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to sort
+     * @return a sequential stream of all nodes in topological order
+     * @throws IllegalArgumentException if the graph is null, or when the stream
+     *                                  reaches a cycle
+     */
+    public static <T extends Comparable<T>> Stream<T> priorityStream(FrozenGraph<T> graph) {
+        Iterator<T> order = priorityIterator(graph);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(order,
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns the order of {@link #prioritySort(FrozenGraph)} one vertex at a time. Each
+     * vertex is produced as soon as all its predecessors have been, so the first results
+     * arrive before the rest of the graph is sorted and the order is never held as a
+     * whole: besides O(V) int counters, memory grows only with the ready frontier.
+     *
+     * <p>A cycle is found only when the iteration reaches it: {@code hasNext} then
+     * throws, after the vertices that do not depend on the cycle have been produced.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to sort
+     * @return an iterator over all nodes in topological order
+     * @throws IllegalArgumentException if the graph is null
+     */
+    public static <T extends Comparable<T>> Iterator<T> priorityIterator(FrozenGraph<T> graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph cannot be null");
+        }
+        return new KahnIterator<>(graph, Comparator.naturalOrder(), true);
+    }
+
+    /**
+     * Returns the order of {@link #prioritySort(FrozenGraph, Comparator)} one vertex at a
+     * time, in the same way as {@link #priorityIterator(FrozenGraph)}.
+     *
+     * @param <T>   the type of the vertices in the graph
+     * @param graph the {@link FrozenGraph} to sort
+     * @param order the order in which ready vertices are released
+     * @return an iterator over all nodes in topological order
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static <T extends Comparable<T>> Iterator<T> priorityIterator(
+            FrozenGraph<T> graph, Comparator<? super T> order) {
+        if (graph == null || order == null) {
+            throw new IllegalArgumentException("Graph or order cannot be null");
+        }
+        return new KahnIterator<>(graph, order, false);
+    }
+
+    /**
+     * Runs Kahn's algorithm to completion, collecting the order.
+     *
+     * @param graph      the {@link FrozenGraph} to sort
+     * @param order      ranks the vertices, breaking ties between equal priorities
+     * @param byPriority whether ready vertices are ordered by edge priority first
+     * @param <T>        the type of the vertices in the graph
+     * @return a {@link LinkedList} of all nodes in topological order
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    private static <T extends Comparable<T>> LinkedList<T> kahn(
+            FrozenGraph<T> graph, Comparator<? super T> order, boolean byPriority) {
+        LinkedList<T> sortedOrder = new LinkedList<>();
+        new KahnIterator<>(graph, order, byPriority).forEachRemaining(sortedOrder::addLast);
+        return sortedOrder;
+    }
+
+    /**
+     * Runs Kahn's algorithm over the ids of a frozen graph, one vertex per call to
+     * {@code next}. Each ready vertex is queued as one primitive long key in a
+     * {@link LongMinHeap}: the releasing edge's priority in the high 32 bits when ordering
+     * by priority, and the vertex's rank in the given order in the low 32 bits.
+     *
+     * @param <T> the type of the vertices in the graph
+     */
+    private static final class KahnIterator<T extends Comparable<T>> implements Iterator<T> {
+        /**
+         * The graph being sorted.
+         */
+        private final FrozenGraph<T> graph;
+
+        /**
+         * Whether ready vertices are ordered by edge priority first.
+         */
+        private final boolean byPriority;
+
+        /**
+         * The id holding each rank.
+         */
+        private final int[] byRank;
+
+        /**
+         * The rank of each id.
+         */
+        private final int[] rank;
+
+        /**
+         * The number of unplaced predecessors of each id.
+         */
+        private final int[] inDegree;
+
+        /**
+         * The keys of the vertices whose predecessors are all placed.
+         */
+        private final LongMinHeap ready = new LongMinHeap();
+
+        /**
+         * The number of vertices produced so far.
+         */
+        private int produced = 0;
+
+        /**
+         * Ranks the vertices and queues those without predecessors.
+         *
+         * @param graph      the {@link FrozenGraph} to sort
+         * @param order      ranks the vertices, breaking ties between equal priorities
+         * @param byPriority whether ready vertices are ordered by edge priority first
+         */
+        KahnIterator(FrozenGraph<T> graph, Comparator<? super T> order, boolean byPriority) {
+            this.graph = graph;
+            this.byPriority = byPriority;
+            int n = graph.getVertexCount();
+
+            // Rank every id once, so the queue compares long keys instead of vertices
+            byRank = rankIds(graph, order);
+            rank = new int[n];
+            for (int r = 0; r < n; r++) {
+                rank[byRank[r]] = r;
+            }
+
+            inDegree = new int[n];
+            for (int id = 0; id < n; id++) {
+                inDegree[id] = graph.inEnd(id) - graph.inStart(id);
+                if (inDegree[id] == 0) {
+                    ready.offer(readyKey(byPriority ? Integer.MIN_VALUE : 0, rank[id]));
+                }
+            }
+        }
+
+        /**
+         * Returns whether there are more vertices to produce.
+         *
+         * @return true if there are more vertices
+         * @throws IllegalArgumentException if the remaining vertices all lie on or
+         *                                  behind a cycle
+         */
+        @Override
+        public boolean hasNext() {
+            if (!ready.isEmpty()) {
+                return true;
+            }
+            if (produced < inDegree.length) {
+                throw new IllegalArgumentException("Graph contains a cycle.");
+            }
+            return false;
+        }
+
+        /**
+         * Places the next ready vertex and releases the successors it was holding back.
+         *
+         * @return the next vertex in topological order
+         * @throws NoSuchElementException if every vertex has been produced
+         * @throws IllegalArgumentException if the remaining vertices all lie on or
+         *                                  behind a cycle
+         */
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more vertices in the order.");
+            }
+            int current = byRank[(int) (ready.poll() & 0xFFFFFFFFL)];
+            for (int pos = graph.outStart(current); pos < graph.outEnd(current); pos++) {
+                int neighbor = graph.target(pos);
+                if (--inDegree[neighbor] == 0) {
+                    ready.offer(readyKey(byPriority ? graph.priority(pos) : 0, rank[neighbor]));
                 }
             }
+            produced++;
+            return graph.vertexAt(current);
+        }
+    }
+
+    /**
+     * Lists the ids of a frozen graph in the given order of their vertices, keeping
+     * equal vertices in id order. In natural order the vertices themselves are sorted
+     * and mapped back to ids; otherwise the ids are merge sorted in an {@code int[]}, so
+     * no id is boxed either way.
+     *
+     * @param graph the graph whose ids are ranked
+     * @param order the order of the vertices
+     * @param <T>   the type of the vertices in the graph
+     * @return the id holding each rank
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> int[] rankIds(
+            FrozenGraph<T> graph, Comparator<? super T> order) {
+        int n = graph.getVertexCount();
+        int[] ids = new int[n];
+        if (order == Comparator.naturalOrder()) {
+            Comparable<T>[] vertices = new Comparable[n];
+            for (int id = 0; id < n; id++) {
+                vertices[id] = graph.vertexAt(id);
+            }
+            Arrays.sort(vertices); // Stable, so equal vertices keep id order
+            for (int r = 0; r < n; r++) {
+                ids[r] = graph.idOf((T) vertices[r]);
+            }
+            return ids;
+        }
+        for (int id = 0; id < n; id++) {
+            ids[id] = id;
+        }
+        mergeSort(ids, new int[n], 0, n, graph, order);
+        return ids;
+    }
+
+    /**
+     * Stably sorts a range of ids by their vertices.
+     *
+     * @param ids     the ids, sorted in place
+     * @param scratch a buffer at least as long as {@code ids}
+     * @param from    the first index of the range
+     * @param to      the index just past the range
+     * @param graph   the graph the ids belong to
+     * @param order   the order of the vertices
+     * @param <T>     the type of the vertices in the graph
+     */
+    private static <T extends Comparable<T>> void mergeSort(int[] ids, int[] scratch,
+            int from, int to, FrozenGraph<T> graph, Comparator<? super T> order) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(ids, scratch, from, mid, graph, order);
+        mergeSort(ids, scratch, mid, to, graph, order);
+        if (order.compare(graph.vertexAt(ids[mid - 1]), graph.vertexAt(ids[mid])) <= 0) {
+            return; // The halves are already in order
+        }
+        System.arraycopy(ids, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid
+                    && order.compare(graph.vertexAt(scratch[left]), graph.vertexAt(scratch[right])) <= 0)) {
+                ids[i] = scratch[left++];
+            } else {
+                ids[i] = scratch[right++];
+            }
         }
+    }
 
-        // Mark current node as finished and add to sorted order
-        finished.add(currentNode);
-        sortedOrder.addFirst(currentNode);
+    /**
+     * Packs a priority and a rank into one key that orders by priority, then by rank.
+     *
+     * @param priority the priority, compared first
+     * @param rank     the non-negative rank, compared second
+     * @return the combined key
+     */
+    private static long readyKey(int priority, int rank) {
+        return ((long) priority << 32) | rank;
+    }
 
+    /**
+     * The recursive depth-first sort this class used to run, kept as a reference for
+     * {@link #main}: successors are visited from the largest down, and the sort restarts
+     * from the earliest added vertex that is not finished.
+     *
+     * @param graph       the graph to sort
+     * @param current     the vertex to visit
+     * @param started     the vertices that have been started
+     * @param finished    the vertices that have been fully processed
+     * @param sortedOrder the resulting topological order
+     * @return true if the traversal finished, false if a cycle is detected
+     */
+    private static boolean referenceVisit(ThreeTenGraph<Integer> graph, Integer current,
+            BitSet started, BitSet finished, LinkedList<Integer> sortedOrder) {
+        started.set(current);
+        for (Integer neighbor : graph.getSuccessorsDescending(current)) {
+            if (started.get(neighbor) && !finished.get(neighbor)) {
+                return false;
+            }
+            if (!started.get(neighbor) && !referenceVisit(graph, neighbor, started, finished, sortedOrder)) {
+                return false;
+            }
+        }
+        finished.set(current);
+        sortedOrder.addFirst(current);
         return true;
     }
+
+    /**
+     * Kahn's algorithm by repeated linear scans, kept as a reference for {@link #main}:
+     * vertices without predecessors come first, then the vertex whose last incoming edge
+     * has the lowest priority, with ties broken by natural order.
+     *
+     * @param graph the graph to sort
+     * @return the order, or null if the graph contains a cycle
+     */
+    private static LinkedList<Integer> referencePrioritySort(ThreeTenGraph<Integer> graph) {
+        int n = graph.getVertexCount();
+        int[] inDegree = new int[n];
+        long[] key = new long[n];
+        Arrays.fill(key, Long.MAX_VALUE);
+        for (int v = 0; v < n; v++) {
+            inDegree[v] = graph.inDegree(v);
+            if (inDegree[v] == 0) {
+                key[v] = Long.MIN_VALUE;
+            }
+        }
+        LinkedList<Integer> order = new LinkedList<>();
+        for (int placed = 0; placed < n; placed++) {
+            int best = -1;
+            for (int v = 0; v < n; v++) {
+                if (key[v] != Long.MAX_VALUE && (best < 0 || key[v] < key[best])) {
+                    best = v;
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            key[best] = Long.MAX_VALUE;
+            inDegree[best] = -1;
+            order.add(best);
+            for (Destination<Integer> edge : graph.getOutEdges(best)) {
+                int target = graph.getDest(edge);
+                if (--inDegree[target] == 0) {
+                    key[target] = edge.getPriority();
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Tests the depth-first sort against the recursive reference on random graphs, and
+     * on a 100,000-vertex chain and forest that the recursive version could not handle,
+     * and the priority sort's tie-breaking against a reference Kahn's algorithm.
+     *
+     * @param args 0 - optional number of random graphs
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        long seed = 1703;
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = 1 + (int) (seed >>> 59);
+            boolean cyclic = trial % 5 == 4;
+            ThreeTenGraph<Integer> graph = new ThreeTenGraph<>();
+            for (int v = 0; v < n; v++) {
+                graph.addVertex(n - 1 - v); // Added in reverse of natural order
+            }
+            for (int from = 0; from < n; from++) {
+                for (int to = cyclic ? 0 : from + 1; to < n; to++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    if ((seed >>> 62) == 0 && to != from) {
+                        graph.addEdge(new Destination<>(to, 1), from, to);
+                    }
+                }
+            }
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            Integer start = (int) ((seed >>> 33) % n);
+
+            LinkedList<Integer> expected = new LinkedList<>();
+            BitSet started = new BitSet(n);
+            BitSet finished = new BitSet(n);
+            FrozenGraph<Integer> frozen = graph.freeze();
+            boolean acyclic = referenceVisit(graph, start, started, finished, expected);
+            for (int id = 0; acyclic && id < n; id++) {
+                Integer v = frozen.vertexAt(id);
+                if (!finished.get(v)) {
+                    acyclic = referenceVisit(graph, v, started, finished, expected);
+                }
+            }
+
+            LinkedList<Integer> actual = null;
+            try {
+                actual = topologicalSort(graph, start);
+            } catch (IllegalArgumentException e) {
+                // Compared with the reference below
+            }
+            if (acyclic ? !expected.equals(actual) : actual != null) {
+                System.out.println("Trial " + trial + ": sort differs from the recursive reference");
+                return;
+            }
+        }
+        System.out.println("Yay 1: " + trials + " random graphs sort as the recursive reference does");
+
+        // A 100,000-vertex chain overflowed the call stack of the recursive sort
+        int length = 100000;
+        ThreeTenGraph<Integer> chain = new ThreeTenGraph<>();
+        for (int v = 0; v < length; v++) {
+            chain.addVertex(v);
+        }
+        for (int v = 0; v + 1 < length; v++) {
+            chain.addEdge(new Destination<>(v + 1, 1), v, v + 1);
+        }
+        LinkedList<Integer> order = topologicalSort(chain, 0);
+        boolean inOrder = order.size() == length;
+        int expectedNext = 0;
+        for (Integer v : order) {
+            inOrder &= v == expectedNext++;
+        }
+        if (inOrder) {
+            System.out.println("Yay 2: a " + length + "-vertex chain sorts without overflowing the stack");
+        }
+
+        // A forest of single vertices restarts once per vertex; the restarts must stay linear
+        ThreeTenGraph<Integer> forest = new ThreeTenGraph<>();
+        for (int v = 0; v < length; v++) {
+            forest.addVertex(v);
+        }
+        long begin = System.nanoTime();
+        order = topologicalSort(forest, length / 2);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        if (order.size() == length && order.getLast() == length / 2 && order.getFirst() == length - 1) {
+            System.out.println("Yay 3: a forest of " + length + " vertices sorts in " + millis + " ms");
+        }
+
+        // Sources first in natural order, then by releasing edge priority, then natural order
+        ThreeTenGraph<String> graph = new ThreeTenGraph<>();
+        for (String v : new String[] {"D", "C", "B", "A", "E"}) {
+            graph.addVertex(v);
+        }
+        graph.addEdge(new Destination<>("A", 5), "C", "A");
+        graph.addEdge(new Destination<>("B", 5), "C", "B");
+        graph.addEdge(new Destination<>("E", 1), "D", "E");
+        if (prioritySort(graph).equals(Arrays.asList("C", "D", "E", "A", "B"))) {
+            System.out.println("Yay 4: prioritySort breaks ties as documented");
+        }
+
+        // Random DAGs with many equal priorities, through every way of running the sort
+        for (int trial = 0; trial < trials; trial++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int n = 1 + (int) (seed >>> 59);
+            ThreeTenGraph<Integer> random = new ThreeTenGraph<>();
+            for (int v = 0; v < n; v++) {
+                random.addVertex(n - 1 - v);
+            }
+            for (int from = 0; from < n; from++) {
+                for (int to = from + 1; to < n; to++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    if ((seed >>> 62) == 0) {
+                        random.addEdge(new Destination<>(to, (int) (seed >>> 59) % 4 - 1), from, to);
+                    }
+                }
+            }
+            LinkedList<Integer> expected = referencePrioritySort(random);
+            LinkedList<Integer> streamed = new LinkedList<>();
+            priorityStream(random).forEach(streamed::add);
+            if (!expected.equals(prioritySort(random)) || !expected.equals(streamed)) {
+                System.out.println("Trial " + trial + ": prioritySort differs from the reference");
+                return;
+            }
+        }
+        System.out.println("Yay 5: " + trials + " random DAGs match the reference priority order");
+
+        // A comparator's ties keep the order the vertices were added
+        ThreeTenGraph<String> words = new ThreeTenGraph<>();
+        for (String v : new String[] {"cc", "bb", "d", "a"}) {
+            words.addVertex(v);
+        }
+        if (prioritySort(words, Comparator.comparingInt(String::length)).equals(Arrays.asList("d", "a", "cc", "bb"))) {
+            System.out.println("Yay 6: comparator ties keep insertion order");
+        }
+
+        graph.addEdge(new Destination<>("C", 1), "A", "C");
+        try {
+            prioritySort(graph);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Yay 7: cyclic graph rejected");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of {@link TopologicalSort#topologicalSort(ThreeTenGraph, Comparable)}
+ * results, for serving the same sort many times between graph edits.
+ *
+ * <p>Entries are keyed by graph and start node and stamped with the graph's
+ * {@link ThreeTenGraph#getVersion() version}. A lookup whose stamp no longer matches the
+ * graph is a miss and replaces the stale entry, so any mutation invalidates the results
+ * for that graph without the graph knowing about the cache. When the cache is full, the
+ * least recently used entry is evicted. Hit, miss and eviction counts are kept for
+ * sizing the cache.
+ *
+ * <p>Graphs are held weakly, so caching a graph's results does not keep a discarded
+ * graph alive. Entries for graphs that have been garbage collected are dropped on the
+ * next call to the cache.
+ *
+ * <p>The cache is thread-safe, but sorts run outside its lock, so two threads missing on
+ * the same key at once may both sort. Results are unmodifiable lists shared between
+ * callers.
+ */
+class TopologicalSortCache {
+    /**
+     * The maximum number of cached results.
+     */
+    private final int capacity;
+
+    /**
+     * The cached results, least recently used first.
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /**
+     * The keys whose graphs have been garbage collected.
+     */
+    private final ReferenceQueue<ThreeTenGraph<?>> collected = new ReferenceQueue<>();
+
+    /**
+     * The number of lookups answered from the cache.
+     */
+    private long hits = 0;
+
+    /**
+     * The number of lookups that had to sort.
+     */
+    private long misses = 0;
+
+    /**
+     * The number of results evicted to make room.
+     */
+    private long evictions = 0;
+
+    /**
+     * Constructs an empty cache holding at most the given number of results.
+     *
+     * @param capacity the maximum number of cached results
+     * @throws IllegalArgumentException if the capacity is less than 1
+     */
+    public TopologicalSortCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > TopologicalSortCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the topological sort of a graph from a start node, sorting only if the
+     * graph changed since the result was cached.
+     *
+     * @param <T>       the type of the vertices in the graph
+     * @param graph     the {@link ThreeTenGraph} to sort
+     * @param startNode the node to begin the sorting
+     * @return an unmodifiable list of nodes in topological order
+     * @throws IllegalArgumentException if the graph is null, the startNode is null,
+     *                                  the startNode is not in the graph, or the graph contains a cycle
+     */
+    public <T extends Comparable<T>> List<T> topologicalSort(ThreeTenGraph<T> graph, T startNode) {
+        if (graph == null || startNode == null) {
+            throw new IllegalArgumentException("Graph or starting node cannot be null");
+        }
+
+        Key key = new Key(graph, startNode, collected);
+        long version = graph.getVersion();
+        synchronized (this) {
+            expungeCollected();
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                List<T> order = (List<T>) entry.order;
+                return order;
+            }
+            misses++;
+        }
+
+        List<T> order = Collections.unmodifiableList(TopologicalSort.topologicalSort(graph, startNode));
+        synchronized (this) {
+            entries.put(key, new Entry(version, order));
+        }
+        return order;
+    }
+
+    /**
+     * Removes every cached result. The metrics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached results, including any made stale by later edits.
+     *
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        expungeCollected();
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of cached results.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to sort, because there was no result or
+     * the graph had changed.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results evicted to stay within the capacity.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     *
+     * @return the hit rate, or 0 if there have been no lookups
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Drops the entries of graphs that have been garbage collected. Must be called with
+     * the lock held.
+     */
+    private void expungeCollected() {
+        for (Object key = collected.poll(); key != null; key = collected.poll()) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Returns a summary of the cache's size and metrics.
+     *
+     * @return a summary of the cache
+     */
+    @Override
+    public synchronized String toString() {
+        return "TopologicalSortCache[size=" + entries.size() + "/" + capacity + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    /**
+     * A cache key: a weakly held graph, compared by identity, and a start node.
+     */
+    private static final class Key extends WeakReference<ThreeTenGraph<?>> {
+        /**
+         * The node the sort started from.
+         */
+        private final Object startNode;
+
+        /**
+         * The hash code, fixed while the graph is still reachable.
+         */
+        private final int hash;
+
+        /**
+         * Constructs a key.
+         *
+         * @param graph the graph
+         * @param startNode the start node
+         * @param queue the queue the key is added to once the graph is collected
+         */
+        Key(ThreeTenGraph<?> graph, Object startNode, ReferenceQueue<ThreeTenGraph<?>> queue) {
+            super(graph, queue);
+            this.startNode = startNode;
+            this.hash = 31 * System.identityHashCode(graph) + startNode.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            ThreeTenGraph<?> graph = get();
+            return graph != null && graph == other.get() && startNode.equals(other.startNode);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached result and the graph version it was computed for.
+     */
+    private static final class Entry {
+        /**
+         * The version of the graph when it was sorted.
+         */
+        private final long version;
+
+        /**
+         * The sorted order.
+         */
+        private final List<?> order;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param version the graph version
+         * @param order the sorted order
+         */
+        Entry(long version, List<?> order) {
+            this.version = version;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A vertex dictionary that interns each vertex to a dense int id, so algorithms can keep
+ * per-vertex state in arrays and {@code BitSet}s and translate back to vertices only
+ * when they return.
+ *
+ * <p>Ids are handed out from 0 upwards. The id of a removed vertex is recycled by the
+ * next vertex added, so ids stay below {@link #bound()}, which never exceeds the largest
+ * number of vertices held at once.
+ *
+ * @param <V> the type of vertices being interned
+ */
+class VertexIndex<V> {
+    /**
+     * The id of every interned vertex.
+     */
+    private final HashMap<V, Integer> ids;
+
+    /**
+     * The vertex holding each id, or null for a free id.
+     */
+    private final ArrayList<V> vertices;
+
+    /**
+     * Ids released by removed vertices, ready for reuse.
+     */
+    private int[] freeIds = new int[8];
+
+    /**
+     * The number of entries in {@code freeIds}.
+     */
+    private int freeCount = 0;
+
+    /**
+     * Constructs an empty index.
+     */
+    public VertexIndex() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty index sized for the given number of vertices.
+     *
+     * @param capacity the expected number of vertices
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public VertexIndex(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative.");
+        }
+        this.ids = new HashMap<>(Math.max(16, capacity * 2));
+        this.vertices = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Interns a vertex, returning its existing id if it already has one.
+     *
+     * @param vertex the vertex to intern
+     * @return the id of the vertex
+     * @throws IllegalArgumentException if the vertex is null
+     */
+    public int add(V vertex) {
+        if (vertex == null) {
+            throw new IllegalArgumentException("Vertex cannot be null");
+        }
+        Integer existing = ids.get(vertex);
+        if (existing != null) {
+            return existing;
+        }
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+            vertices.set(id, vertex);
+        } else {
+            id = vertices.size();
+            vertices.add(vertex);
+        }
+        ids.put(vertex, id);
+        return id;
+    }
+
+    /**
+     * Forgets a vertex and frees its id for reuse.
+     *
+     * @param vertex the vertex to remove
+     * @return the id the vertex had, or -1 if it was not interned
+     */
+    public int remove(Object vertex) {
+        Integer id = vertex == null ? null : ids.remove(vertex);
+        if (id == null) {
+            return -1;
+        }
+        vertices.set(id, null);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = id;
+        return id;
+    }
+
+    /**
+     * Returns the id of the specified vertex.
+     *
+     * @param vertex the vertex to look up
+     * @return the id of the vertex, or -1 if it is not interned
+     */
+    public int idOf(Object vertex) {
+        Integer id = vertex == null ? null : ids.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the vertex holding the specified id.
+     *
+     * @param id an id below {@link #bound()}
+     * @return the vertex, or null if the id is free
+     */
+    public V vertexAt(int id) {
+        return vertices.get(id);
+    }
+
+    /**
+     * Returns an exclusive upper bound on the ids in use, for sizing id-indexed arrays.
+     *
+     * @return one more than the largest id ever handed out
+     */
+    public int bound() {
+        return vertices.size();
+    }
+
+    /**
+     * Returns the number of interned vertices.
+     *
+     * @return the number of vertices
+     */
+    public int size() {
+        return ids.size();
+    }
+}